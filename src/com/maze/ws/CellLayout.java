@@ -0,0 +1,404 @@
+package com.maze.ws;
+
+/**
+ * 迷宫存储布局类
+ * 决定每个路径点在位存储中的下标，求解器的步数表也按同样的下标排列；
+ * 相邻路径点的下标运算在构造时预先算好，求解时只需加减与位运算
+ *
+ * @author Wshine
+ */
+public abstract class CellLayout {
+    public final int width;
+    public final int height;
+
+    /**
+     * 布局类型
+     */
+    public enum Type {
+        /**
+         * 按行存储，每行按64位对齐，上下相邻的路径点相差一整行
+         */
+        ROW_MAJOR,
+        /**
+         * 分块Z序（Morton序）存储，块内按Z序排列，上下左右相邻的路径点大多在同一个缓存行附近
+         */
+        MORTON
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param width  迷宫宽度
+     * @param height 迷宫高度
+     */
+    private CellLayout(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 根据布局类型与迷宫宽高生成布局
+     *
+     * @param type   布局类型
+     * @param width  迷宫宽度
+     * @param height 迷宫高度
+     * @return 生成的布局
+     */
+    public static CellLayout of(Type type, int width, int height) {
+        return type == Type.MORTON ? new Morton(width, height) : new RowMajor(width, height);
+    }
+
+    /**
+     * 获取布局类型
+     *
+     * @return 布局类型
+     */
+    public abstract Type getType();
+
+    /**
+     * 获取布局所需的下标总数（包含对齐用的空位，为64的倍数）
+     *
+     * @return 下标总数
+     */
+    public abstract long size();
+
+    /**
+     * 获取迷宫内的路径点实际用到的下标范围，即最大下标加一
+     * 不包含末尾对齐用的空位，求解器的步数表等按下标排列的数组只需要这么大，对齐只对位存储有意义
+     *
+     * @return 最大下标加一
+     */
+    public abstract long span();
+
+    /**
+     * 获取与本布局路径点顺序相同、但不含对齐空位的布局，供求解器的步数表、队列等按下标排列的数组使用
+     * 对齐只对位存储有意义；按行存储时去掉每行末尾的空位，下标为行 * 宽度 + 列，
+     * 分块Z序的块内空位是下标运算的一部分，因此返回自身，数组只需按span()的大小分配
+     *
+     * @return 不含对齐空位的布局
+     */
+    public abstract CellLayout dense();
+
+    /**
+     * 求指定行列的下标
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 该位置的下标
+     */
+    public abstract long index(int row, int col);
+
+    /**
+     * 求下标所在的行
+     *
+     * @param index 下标
+     * @return 所在行
+     */
+    public abstract int row(long index);
+
+    /**
+     * 求下标所在的列
+     *
+     * @param index 下标
+     * @return 所在列
+     */
+    public abstract int col(long index);
+
+    /**
+     * 求下方相邻路径点的下标（不检查越界）
+     *
+     * @param index 下标
+     * @return 下方相邻路径点的下标
+     */
+    public abstract long down(long index);
+
+    /**
+     * 求上方相邻路径点的下标（不检查越界）
+     *
+     * @param index 下标
+     * @return 上方相邻路径点的下标
+     */
+    public abstract long up(long index);
+
+    /**
+     * 求右侧相邻路径点的下标（不检查越界）
+     *
+     * @param index 下标
+     * @return 右侧相邻路径点的下标
+     */
+    public abstract long right(long index);
+
+    /**
+     * 求左侧相邻路径点的下标（不检查越界）
+     *
+     * @param index 下标
+     * @return 左侧相邻路径点的下标
+     */
+    public abstract long left(long index);
+
+    /**
+     * 求指定字中属于迷宫范围内的位（对齐用的空位为0）
+     *
+     * @param word 字下标
+     * @return 有效位的掩码
+     */
+    abstract long validMask(long word);
+
+    /**
+     * 按行存储的布局
+     */
+    private static final class RowMajor extends CellLayout {
+        private final int rowWords;
+        private final long stride;
+        private final long lastMask;
+        private final RowMajor dense;
+
+        /**
+         * 构造方法，每行按64位对齐
+         *
+         * @param width  迷宫宽度
+         * @param height 迷宫高度
+         */
+        private RowMajor(int width, int height) {
+            super(width, height);
+            this.rowWords = (width + 63) >>> 6;
+            this.stride = (long) rowWords << 6;
+            this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+            this.dense = stride == width ? this : new RowMajor(this);
+        }
+
+        /**
+         * 构造不含对齐空位的布局，行与行之间紧密相连，只用于按下标排列的数组，不用于位存储
+         *
+         * @param aligned 对应的按64位对齐的布局
+         */
+        private RowMajor(RowMajor aligned) {
+            super(aligned.width, aligned.height);
+            this.rowWords = 0;
+            this.stride = aligned.width;
+            this.lastMask = 0;
+            this.dense = this;
+        }
+
+        @Override
+        public CellLayout dense() {
+            return dense;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.ROW_MAJOR;
+        }
+
+        @Override
+        public long size() {
+            return stride * height;
+        }
+
+        @Override
+        public long span() {
+            return (height - 1) * stride + width;
+        }
+
+        @Override
+        public long index(int row, int col) {
+            return row * stride + col;
+        }
+
+        @Override
+        public int row(long index) {
+            return (int) (index / stride);
+        }
+
+        @Override
+        public int col(long index) {
+            return (int) (index % stride);
+        }
+
+        @Override
+        public long down(long index) {
+            return index + stride;
+        }
+
+        @Override
+        public long up(long index) {
+            return index - stride;
+        }
+
+        @Override
+        public long right(long index) {
+            return index + 1;
+        }
+
+        @Override
+        public long left(long index) {
+            return index - 1;
+        }
+
+        @Override
+        long validMask(long word) {
+            if (rowWords == 0) {
+                throw new UnsupportedOperationException("不含对齐空位的布局不能用于位存储");
+            }
+            return word % rowWords == rowWords - 1 ? lastMask : -1L;
+        }
+    }
+
+    /**
+     * 分块Z序存储的布局
+     * 迷宫被划分为边长为2的幂（8~256）的正方形块，块之间按行排列，块内按Z序排列；
+     * 下标的低位中偶数位为列、奇数位为行，相邻运算通过对交错位做加减完成
+     */
+    private static final class Morton extends CellLayout {
+        private static final int[] DILATE = new int[256];
+        private final int shift;
+        private final int side;
+        private final long tileSize;
+        private final int tilesX;
+        private final long tileRow;
+        private final long xMask;
+        private final long yMask;
+        private final long codeMask;
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int d = 0;
+                for (int b = 0; b < 8; b++) {
+                    d |= (i >>> b & 1) << (2 * b);
+                }
+                DILATE[i] = d;
+            }
+        }
+
+        /**
+         * 构造方法，块的边长取能覆盖整个迷宫的2的幂，且限制在8~256之间
+         *
+         * @param width  迷宫宽度
+         * @param height 迷宫高度
+         */
+        private Morton(int width, int height) {
+            super(width, height);
+            int s = 3;
+            while (s < 8 && (1 << s) < Math.max(width, height)) {
+                s++;
+            }
+            this.shift = s;
+            this.side = 1 << s;
+            this.tileSize = 1L << (2 * s);
+            this.tilesX = (width + side - 1) >>> s;
+            this.tileRow = tilesX * tileSize;
+            this.codeMask = tileSize - 1;
+            this.xMask = 0x5555555555555555L & codeMask;
+            this.yMask = 0xaaaaaaaaaaaaaaaaL & codeMask;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.MORTON;
+        }
+
+        @Override
+        public CellLayout dense() {
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return (long) ((height + side - 1) >>> shift) * tileRow;
+        }
+
+        /**
+         * 最后一行块中的最后一个块下标最大；块内的Z序对行列都是单调的，最大下标在右下角
+         *
+         * @return 最大下标加一
+         */
+        @Override
+        public long span() {
+            return index(height - 1, width - 1) + 1;
+        }
+
+        @Override
+        public long index(int row, int col) {
+            int r = row & (side - 1);
+            int c = col & (side - 1);
+            return (row >>> shift) * tileRow + (long) (col >>> shift) * tileSize + (DILATE[c] | DILATE[r] << 1);
+        }
+
+        @Override
+        public int row(long index) {
+            long tile = index >>> (2 * shift);
+            return (int) (tile / tilesX) << shift | compact((index & codeMask) >>> 1);
+        }
+
+        @Override
+        public int col(long index) {
+            long tile = index >>> (2 * shift);
+            return (int) (tile % tilesX) << shift | compact(index & codeMask);
+        }
+
+        /**
+         * 取出块内Z序下标中的偶数位并压缩为连续的整数
+         *
+         * @param z Z序下标
+         * @return 压缩后的整数
+         */
+        private static int compact(long z) {
+            int x = (int) z & 0x5555;
+            x = (x | x >>> 1) & 0x3333;
+            x = (x | x >>> 2) & 0x0f0f;
+            x = (x | x >>> 4) & 0x00ff;
+            return x;
+        }
+
+        @Override
+        public long down(long index) {
+            if ((index & yMask) == yMask) {
+                return (index & ~yMask) + tileRow;
+            }
+            return ((index | xMask) + 1) & yMask | (index & ~yMask);
+        }
+
+        @Override
+        public long up(long index) {
+            if ((index & yMask) == 0) {
+                return (index | yMask) - tileRow;
+            }
+            return ((index & yMask) - 1) & yMask | (index & ~yMask);
+        }
+
+        @Override
+        public long right(long index) {
+            if ((index & xMask) == xMask) {
+                return (index & ~xMask) + tileSize;
+            }
+            return ((index | yMask) + 1) & xMask | (index & ~xMask);
+        }
+
+        @Override
+        public long left(long index) {
+            if ((index & xMask) == 0) {
+                return (index | xMask) - tileSize;
+            }
+            return ((index & xMask) - 1) & xMask | (index & ~xMask);
+        }
+
+        @Override
+        long validMask(long word) {
+            long base = word << 6;
+            int row = row(base);
+            int col = col(base);
+            if (row + 8 <= height && col + 8 <= width) {
+                return -1L;
+            }
+
+            //块内一个字对应一个8*8的小方块，只有迷宫边缘的小方块需要逐位判断
+            long mask = 0;
+            for (int b = 0; b < 64; b++) {
+                if (row(base + b) < height && col(base + b) < width) {
+                    mask |= 1L << b;
+                }
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.maze.ws;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 迷宫的位存储类
+ * 每个路径点占一位（1为障碍物），所有位按块存储，每块1024个long；
+ * 拷贝时共享所有块，只有在第一次写入某个块时才复制该块（写时复制），
+ * 因此拷贝的时间复杂度为O(块数)而不是O(路径点数)；全为0的块不分配内存
+ * 也可以从分块存储中按需加载：第一次访问某块时才读入，常驻的块数超过预算时用时钟算法（近似LRU）换出，
+ * 修改过的块在换出或刷新时写回；按需加载的位存储不支持拷贝，读取也会修改内部状态，因此不是线程安全的
+ *
+ * @author Wshine
+ */
+final class CellStore {
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+    private static final AtomicInteger TOKENS = new AtomicInteger();
+
+    final long words;
+    private final long[][] chunks;
+    private final int[] owner;
+    private int token;
+
+    private final TileStore source;
+    private final boolean[] loaded;
+    private final boolean[] dirty;
+    private final boolean[] referenced;
+    private final int[] resident;
+    private int residentCount;
+    private int hand;
+
+    /**
+     * 构造方法，构造一个指定字数、全为0的位存储
+     *
+     * @param words 需要的long字数
+     */
+    CellStore(long words) {
+        this.words = words;
+        this.chunks = new long[(int) ((words + CHUNK_WORDS - 1) >>> CHUNK_SHIFT)][];
+        this.owner = new int[chunks.length];
+        this.token = TOKENS.incrementAndGet();
+        this.source = null;
+        this.loaded = null;
+        this.dirty = null;
+        this.referenced = null;
+        this.resident = null;
+    }
+
+    /**
+     * 构造方法，构造一个从分块存储中按需加载的位存储
+     *
+     * @param words  需要的long字数
+     * @param source 分块存储
+     * @param budget 最多常驻内存的块数（至少为1）
+     */
+    CellStore(long words, TileStore source, int budget) {
+        this.words = words;
+        this.chunks = new long[(int) ((words + CHUNK_WORDS - 1) >>> CHUNK_SHIFT)][];
+        this.owner = new int[chunks.length];
+        this.token = TOKENS.incrementAndGet();
+        this.source = source;
+        this.loaded = new boolean[chunks.length];
+        this.dirty = new boolean[chunks.length];
+        this.referenced = new boolean[chunks.length];
+        this.resident = new int[Math.max(1, Math.min(budget, chunks.length))];
+    }
+
+    /**
+     * 给拷贝用的构造方法，与原存储共享所有块
+     * 原存储会换用新的令牌，此后双方写入共享块时都会先复制该块
+     *
+     * @param store 用于拷贝的位存储
+     * @throws UnsupportedOperationException 原存储为按需加载时抛出
+     */
+    CellStore(CellStore store) {
+        if (store.source != null) {
+            throw new UnsupportedOperationException("按需加载的迷宫不支持拷贝");
+        }
+        this.words = store.words;
+        this.chunks = store.chunks.clone();
+        this.owner = new int[chunks.length];
+        this.token = TOKENS.incrementAndGet();
+        store.token = TOKENS.incrementAndGet();
+        this.source = null;
+        this.loaded = null;
+        this.dirty = null;
+        this.referenced = null;
+        this.resident = null;
+    }
+
+    /**
+     * 获取指定位的值
+     *
+     * @param bit 位下标
+     * @return 一个布尔值，代表该位是否为1
+     */
+    boolean get(long bit) {
+        return (getWord(bit >>> 6) >>> bit & 1) != 0;
+    }
+
+    /**
+     * 设置指定位的值
+     *
+     * @param bit   位下标
+     * @param value 需要设置的值
+     */
+    void set(long bit, boolean value) {
+        long w = bit >>> 6;
+        long old = getWord(w);
+        long now = value ? old | 1L << bit : old & ~(1L << bit);
+        if (now != old) {
+            setWord(w, now);
+        }
+    }
+
+    /**
+     * 获取指定下标的字
+     *
+     * @param w 字下标
+     * @return 该字的值
+     */
+    long getWord(long w) {
+        int c = (int) (w >>> CHUNK_SHIFT);
+        long[] chunk = source == null ? chunks[c] : load(c);
+        return chunk == null ? 0 : chunk[(int) w & (CHUNK_WORDS - 1)];
+    }
+
+    /**
+     * 设置指定下标的字
+     *
+     * @param w     字下标
+     * @param value 该字的值
+     */
+    void setWord(long w, long value) {
+        int c = (int) (w >>> CHUNK_SHIFT);
+        if (value == 0 && (source == null ? chunks[c] : load(c)) == null) {
+            return;
+        }
+        writable(c)[(int) w & (CHUNK_WORDS - 1)] = value;
+    }
+
+    /**
+     * 比较两个位存储的内容是否相同，共享的块直接跳过
+     *
+     * @param store 另一个位存储
+     * @return 一个布尔值，代表内容是否相同
+     */
+    boolean contentEquals(CellStore store) {
+        if (words != store.words) {
+            return false;
+        }
+
+        for (int c = 0; c < chunks.length; c++) {
+            if (source == null && store.source == null && chunks[c] == store.chunks[c]) {
+                continue;
+            }
+            long base = (long) c << CHUNK_SHIFT;
+            for (int i = 0; i < chunkLength(c); i++) {
+                if (getWord(base + i) != store.getWord(base + i)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 获取指定块的可写数组，该块与其它存储共享或尚未分配时先进行复制或分配
+     *
+     * @param c 块下标
+     * @return 该块可写的数组
+     */
+    private long[] writable(int c) {
+        if (source != null) {
+            long[] chunk = load(c);
+            if (chunk == null) {
+                chunk = new long[chunkLength(c)];
+                chunks[c] = chunk;
+            }
+            dirty[c] = true;
+            return chunk;
+        }
+
+        long[] chunk = chunks[c];
+        if (owner[c] != token) {
+            chunk = chunk == null ? new long[chunkLength(c)] : chunk.clone();
+            chunks[c] = chunk;
+            owner[c] = token;
+        }
+        return chunk;
+    }
+
+    /**
+     * 求指定块的长度（最后一块可能不满）
+     *
+     * @param c 块下标
+     * @return 该块的字数
+     */
+    private int chunkLength(int c) {
+        return (int) Math.min(CHUNK_WORDS, words - ((long) c << CHUNK_SHIFT));
+    }
+
+    /**
+     * 获取按需加载的块，尚未加载时先从分块存储读入（必要时换出其它块）
+     *
+     * @param c 块下标
+     * @return 该块的数组（全为0时为null）
+     */
+    private long[] load(int c) {
+        if (loaded[c]) {
+            referenced[c] = true;
+            return chunks[c];
+        }
+
+        int slot;
+        if (residentCount < resident.length) {
+            slot = residentCount++;
+        } else {
+            //时钟算法：跳过最近访问过的块并清除其访问标记，换出第一个未被访问的块
+            while (referenced[resident[hand]]) {
+                referenced[resident[hand]] = false;
+                hand = (hand + 1) % resident.length;
+            }
+            slot = hand;
+            hand = (hand + 1) % resident.length;
+            evict(resident[slot]);
+        }
+
+        try {
+            chunks[c] = source.read(c, chunkLength(c));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resident[slot] = c;
+        loaded[c] = true;
+        referenced[c] = true;
+        return chunks[c];
+    }
+
+    /**
+     * 换出一块，修改过的块先写回
+     *
+     * @param c 块下标
+     */
+    private void evict(int c) {
+        writeBack(c);
+        chunks[c] = null;
+        loaded[c] = false;
+        referenced[c] = false;
+    }
+
+    /**
+     * 把修改过的块写回分块存储
+     *
+     * @param c 块下标
+     */
+    private void writeBack(int c) {
+        if (!dirty[c]) {
+            return;
+        }
+        try {
+            source.write(c, chunks[c]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty[c] = false;
+    }
+
+    /**
+     * 把所有修改过的常驻块写回分块存储（不是按需加载时什么也不做）
+     */
+    void flush() {
+        if (source == null) {
+            return;
+        }
+        for (int i = 0; i < residentCount; i++) {
+            writeBack(resident[i]);
+        }
+    }
+
+    /**
+     * 判断该位存储是否从分块存储中按需加载
+     *
+     * @return 一个布尔值，代表是否按需加载
+     */
+    boolean isBacked() {
+        return source != null;
+    }
+}
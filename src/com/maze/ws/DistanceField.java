@@ -0,0 +1,325 @@
+package com.maze.ws;
+
+/**
+ * 到终点的距离场
+ * 从终点出发做一次反向BFS，记录每个路径点到终点的最短路径长度，之后任意路径点的距离与下一步都可以O(1)查询，
+ * 适合终点固定、大量起点查询的场景；距离不超过65534时用char[]存储，否则改用int[]
+ * 迷宫被修改后可以调用update()进行修补：打开障碍只会缩短距离，从该点向外传播即可；
+ * 关闭路径点时若有路径点的最短路径依赖于它则重新计算；
+ * 未调用update()的修改（包括终点的改变）会在下一次查询时被发现并重新计算，起点的改变不影响距离场
+ * 迷宫不变时可以被多个线程同时查询，迷宫可能被修改时不是线程安全的
+ *
+ * @author Wshine
+ */
+public class DistanceField {
+    private static final int CHAR_LIMIT = Character.MAX_VALUE - 1;
+
+    private final Maze maze;
+    private final int width;
+    private final int height;
+    private char[] near;
+    private int[] far;
+    private long version;
+    private int rebuildCount;
+
+    /**
+     * 构造方法，立即计算距离场
+     *
+     * @param maze 需要计算的迷宫
+     * @throws IllegalArgumentException 迷宫过大，无法在内存中计算或不是四连通时抛出
+     */
+    public DistanceField(Maze maze) {
+        if ((long) maze.width * maze.height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("迷宫过大，无法在内存中求解");
+        }
+        if (maze.getTopology().type != Topology.Type.FOUR) {
+            throw new IllegalArgumentException("距离场只支持四连通的迷宫");
+        }
+        this.maze = maze;
+        this.width = maze.width;
+        this.height = maze.height;
+        rebuild();
+    }
+
+    /**
+     * 从终点出发重新计算整个距离场
+     */
+    public void rebuild() {
+        int cells = width * height;
+        near = new char[cells];
+        far = null;
+        rebuildCount++;
+
+        int[] queue = new int[cells];
+        int head = 0;
+        int tail = 0;
+        Maze.Point dest = maze.getDestPoint();
+        int d = dest.row * width + dest.column;
+        if (maze.isPassable(dest.row, dest.column)) {
+            set(d, 1);
+            queue[tail++] = d;
+        }
+
+        while (head < tail) {
+            int p = queue[head++];
+            int r = p / width;
+            int c = p % width;
+            int next = get(p) + 1;
+            if (r > 0 && get(p - width) == 0 && maze.isPassable(r - 1, c)) {
+                set(p - width, next);
+                queue[tail++] = p - width;
+            }
+            if (r < height - 1 && get(p + width) == 0 && maze.isPassable(r + 1, c)) {
+                set(p + width, next);
+                queue[tail++] = p + width;
+            }
+            if (c > 0 && get(p - 1) == 0 && maze.isPassable(r, c - 1)) {
+                set(p - 1, next);
+                queue[tail++] = p - 1;
+            }
+            if (c < width - 1 && get(p + 1) == 0 && maze.isPassable(r, c + 1)) {
+                set(p + 1, next);
+                queue[tail++] = p + 1;
+            }
+        }
+
+        version = maze.contentHashWithoutStart();
+    }
+
+    /**
+     * 求指定路径点到终点的最短路径长度
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 最短路径长度（终点为1，障碍物、无法到达或超出迷宫范围为-1）
+     */
+    public int distance(int row, int col) {
+        if (row < 0 || row >= height || col < 0 || col >= width) {
+            return -1;
+        }
+        checkVersion();
+        int d = get(row * width + col);
+        return d == 0 ? -1 : d;
+    }
+
+    /**
+     * 求从起点到终点的最短路径长度，结果与MazeSolver.countStep()相同
+     *
+     * @return 最短路径长度（-1则迷宫无解）
+     */
+    public int countStep() {
+        Maze.Point start = maze.getStartPoint();
+        return distance(start.row, start.column);
+    }
+
+    /**
+     * 求从指定路径点向终点前进的下一步
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 下一步所在的路径点（已在终点、障碍物、无法到达或超出迷宫范围时为null）
+     * @throws IllegalStateException 没有离终点更近一步的相邻路径点（距离场与迷宫不一致）时抛出
+     */
+    public Maze.Point nextStep(int row, int col) {
+        if (row < 0 || row >= height || col < 0 || col >= width) {
+            return null;
+        }
+        checkVersion();
+        int p = row * width + col;
+        int next = get(p) - 1;
+        if (next <= 0) {
+            return null;
+        }
+
+        if (row > 0 && get(p - width) == next) {
+            return maze.getUnit(row - 1, col);
+        }
+        if (row < height - 1 && get(p + width) == next) {
+            return maze.getUnit(row + 1, col);
+        }
+        if (col > 0 && get(p - 1) == next) {
+            return maze.getUnit(row, col - 1);
+        }
+        if (col < width - 1 && get(p + 1) == next) {
+            return maze.getUnit(row, col + 1);
+        }
+        throw new IllegalStateException("距离场在(" + row + "," + col + ")处没有离终点更近的相邻路径点");
+    }
+
+    /**
+     * 迷宫中的一个路径点被修改后修补距离场
+     * 若在上次计算或修补之后还有其它修改，则直接重新计算
+     *
+     * @param row 被修改的路径点所在行
+     * @param col 被修改的路径点所在列
+     */
+    public void update(int row, int col) {
+        long now = maze.contentHashWithoutStart();
+        if (now == version) {
+            return;
+        }
+        Maze.Point dest = maze.getDestPoint();
+        if ((version ^ now) != Maze.cellKey(row, col) || !maze.isPassable(dest.row, dest.column)) {
+            rebuild();
+            return;
+        }
+
+        int p = row * width + col;
+        if (maze.isPassable(row, col)) {
+            open(p);
+        } else if (!close(p)) {
+            rebuild();
+            return;
+        }
+        version = now;
+    }
+
+    /**
+     * 路径点被打开后，从该点出发把缩短的距离向外传播
+     *
+     * @param p 被打开的路径点下标
+     */
+    private void open(int p) {
+        int best = 0;
+        for (int q : neighbours(p)) {
+            int d = get(q);
+            if (d != 0 && (best == 0 || d < best)) {
+                best = d;
+            }
+        }
+        if (best == 0) {
+            return;
+        }
+
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        set(p, best + 1);
+        queue[tail++] = p;
+        while (head < tail) {
+            int u = queue[head++];
+            int next = get(u) + 1;
+            for (int q : neighbours(u)) {
+                int d = get(q);
+                if (maze.isPassable(q / width, q % width) && (d == 0 || d > next)) {
+                    set(q, next);
+                    if (tail == queue.length) {
+                        int[] grown = new int[queue.length * 2];
+                        System.arraycopy(queue, head, grown, 0, tail - head);
+                        tail -= head;
+                        head = 0;
+                        queue = grown;
+                    }
+                    queue[tail++] = q;
+                }
+            }
+        }
+    }
+
+    /**
+     * 路径点被关闭后修补距离场
+     * 若没有相邻路径点只能经过该点到达终点，则只需清除该点的距离
+     *
+     * @param p 被关闭的路径点下标
+     * @return 一个布尔值，代表是否修补成功（失败则需要重新计算）
+     */
+    private boolean close(int p) {
+        int d = get(p);
+        if (d == 0) {
+            return true;
+        }
+
+        set(p, 0);
+        for (int q : neighbours(p)) {
+            if (get(q) != d + 1) {
+                continue;
+            }
+            boolean other = false;
+            for (int s : neighbours(q)) {
+                if (get(s) == d) {
+                    other = true;
+                    break;
+                }
+            }
+            if (!other) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 求路径点在迷宫范围内的相邻路径点
+     *
+     * @param p 路径点下标
+     * @return 相邻路径点的下标
+     */
+    private int[] neighbours(int p) {
+        int r = p / width;
+        int c = p % width;
+        int[] result = new int[(r > 0 ? 1 : 0) + (r < height - 1 ? 1 : 0) + (c > 0 ? 1 : 0) + (c < width - 1 ? 1 : 0)];
+        int n = 0;
+        if (r > 0) {
+            result[n++] = p - width;
+        }
+        if (r < height - 1) {
+            result[n++] = p + width;
+        }
+        if (c > 0) {
+            result[n++] = p - 1;
+        }
+        if (c < width - 1) {
+            result[n] = p + 1;
+        }
+        return result;
+    }
+
+    /**
+     * 检查迷宫在上次计算后是否被修改过（起点除外），修改过则重新计算
+     */
+    private void checkVersion() {
+        if (version != maze.contentHashWithoutStart()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 读取距离
+     *
+     * @param p 路径点下标
+     * @return 记录的距离（0为无法到达）
+     */
+    private int get(int p) {
+        return far == null ? near[p] : far[p];
+    }
+
+    /**
+     * 写入距离，超出char的范围时换用int[]存储
+     *
+     * @param p 路径点下标
+     * @param d 距离
+     */
+    private void set(int p, int d) {
+        if (far == null && d > CHAR_LIMIT) {
+            far = new int[near.length];
+            for (int i = 0; i < near.length; i++) {
+                far[i] = near[i];
+            }
+            near = null;
+        }
+        if (far == null) {
+            near[p] = (char) d;
+        } else {
+            far[p] = d;
+        }
+    }
+
+    /**
+     * 获取距离场被完整计算的次数（包括构造时的一次）
+     *
+     * @return 完整计算的次数
+     */
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+}
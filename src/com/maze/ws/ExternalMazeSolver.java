@@ -0,0 +1,611 @@
+package com.maze.ws;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 外存迷宫求解类
+ * 用于求解无法放入堆内存的迷宫（最大50000*50000）：迷宫从二进制文件（格式见FileHelper）中以内存映射方式读取，
+ * 步数表写入内存映射的输出文件（每个路径点一个int，下标为行 * 宽度 + 列，起点为1，无法到达为0），
+ * 步数表同时充当BFS的访问标记；
+ * BFS的每一层是按路径点下标排序的若干有序段，超出缓冲区的部分以差分编码写入临时文件，
+ * 扩展下一层时把各段归并读取，使迷宫与步数表都按下标递增的顺序访问；
+ * 堆内存只需要两个缓冲区与归并用的读缓冲，与迷宫大小无关
+ *
+ * @author Wshine
+ */
+public class ExternalMazeSolver implements Closeable {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MAX_MERGE = 64;
+    private static final int STREAM_BUFFER = 1 << 16;
+
+    public final int width;
+    public final int height;
+    private final int startRow;
+    private final int startCol;
+    private final int destRow;
+    private final int destCol;
+    private final int rowWords;
+
+    private final RandomAccessFile mazeFile;
+    private final RandomAccessFile distanceFile;
+    private final MappedByteBuffer[] mazeSegments;
+    private final MappedByteBuffer[] distanceSegments;
+    private final File tempDir;
+
+    private long[] buffer;
+    private long[] tail;
+    private int bufferSize;
+    private int tailSize;
+    private List<File> runs = new ArrayList<>();
+    private List<File> nextRuns = new ArrayList<>();
+    private int layerCount;
+    private long peakLayer;
+    private boolean solved;
+
+    /**
+     * 构造方法，临时文件放在步数表文件所在的目录，缓冲区可存放2^20个路径点
+     *
+     * @param mazePath     迷宫二进制文件路径
+     * @param distancePath 步数表输出文件路径（已存在则覆盖）
+     * @throws IOException IO错误或文件不是迷宫二进制文件
+     */
+    public ExternalMazeSolver(String mazePath, String distancePath) throws IOException {
+        this(mazePath, distancePath, null, 1 << 20);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param mazePath     迷宫二进制文件路径
+     * @param distancePath 步数表输出文件路径（已存在则覆盖）
+     * @param tempDir      临时文件目录（null则使用步数表文件所在的目录）
+     * @param bufferCells  每个缓冲区可存放的路径点数量，决定堆内存的用量
+     * @throws IOException IO错误或文件不是迷宫二进制文件
+     */
+    public ExternalMazeSolver(String mazePath, String distancePath, File tempDir, int bufferCells) throws IOException {
+        if (bufferCells < 1) {
+            throw new IllegalArgumentException("缓冲区大小必须为正整数");
+        }
+
+        this.mazeFile = new RandomAccessFile(mazePath, "r");
+        try {
+            mazeFile.seek(0);
+            if (mazeFile.readInt() != FileHelper.BINARY_MAGIC || mazeFile.readInt() != FileHelper.BINARY_VERSION) {
+                throw new IOException("不是迷宫二进制文件：" + mazePath);
+            }
+            this.width = mazeFile.readInt();
+            this.height = mazeFile.readInt();
+            this.startRow = mazeFile.readInt();
+            this.startCol = mazeFile.readInt();
+            this.destRow = mazeFile.readInt();
+            this.destCol = mazeFile.readInt();
+            if (width < 1 || width > Maze.MAX_SIZE || height < 1 || height > Maze.MAX_SIZE) {
+                throw new IOException("迷宫宽高超限，宽度和高度只能为1~50000之间的整数");
+            }
+            if (!inside(startRow, startCol) || !inside(destRow, destCol)) {
+                throw new IOException("起点或终点不在迷宫范围内");
+            }
+
+            this.rowWords = (width + 63) >>> 6;
+            long mazeBytes = FileHelper.BINARY_HEADER + (long) rowWords * height * 8;
+            if (mazeFile.length() < mazeBytes) {
+                throw new IOException("迷宫二进制文件不完整：" + mazePath);
+            }
+            this.mazeSegments = map(mazeFile.getChannel(), FileChannel.MapMode.READ_ONLY, mazeBytes);
+        } catch (IOException | RuntimeException e) {
+            mazeFile.close();
+            throw e;
+        }
+
+        File distance = new File(distancePath).getAbsoluteFile();
+        this.tempDir = tempDir == null ? distance.getParentFile() : tempDir;
+        this.distanceFile = new RandomAccessFile(distance, "rw");
+        try {
+            //先截断再扩展，未写入的部分为0，在支持的文件系统上不占用磁盘空间
+            distanceFile.setLength(0);
+            distanceFile.setLength((long) width * height * 4);
+            this.distanceSegments = map(distanceFile.getChannel(), FileChannel.MapMode.READ_WRITE, distanceFile.length());
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        this.buffer = new long[bufferCells];
+        this.tail = new long[bufferCells];
+    }
+
+    /**
+     * 把文件按1GB分段映射到内存
+     *
+     * @param channel 文件通道
+     * @param mode    映射方式
+     * @param length  需要映射的字节数
+     * @return 各段的映射
+     * @throws IOException IO错误
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long length) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long begin = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(mode, begin, Math.min(SEGMENT_MASK + 1, length - begin));
+        }
+        return segments;
+    }
+
+    /**
+     * 求起点到所有路径点的最短路径长度并写入步数表文件
+     * 步数表同时是访问标记，再次调用时先把上一次的步数表清零
+     *
+     * @return 起点到终点的最短路径长度（-1则迷宫无解）
+     * @throws IOException 读写临时文件时的IO错误
+     */
+    public int solve() throws IOException {
+        if (solved) {
+            clearDistances();
+        }
+        solved = true;
+        layerCount = 0;
+        peakLayer = 0;
+        bufferSize = 0;
+        tailSize = 0;
+
+        setDistance((long) startRow * width + startCol, 1);
+        tail[0] = (long) startRow * width + startCol;
+        tailSize = 1;
+
+        int step = 1;
+        try {
+            while (tailSize > 0 || !runs.isEmpty()) {
+                layerCount++;
+                long layer = expand(step + 1);
+                peakLayer = Math.max(peakLayer, layer);
+                step++;
+            }
+        } finally {
+            deleteRuns(runs);
+            deleteRuns(nextRuns);
+        }
+
+        for (MappedByteBuffer segment : distanceSegments) {
+            segment.force();
+        }
+        return getDistance(destRow, destCol) == 0 ? -1 : getDistance(destRow, destCol);
+    }
+
+    /**
+     * 把步数表文件的映射全部写为0
+     */
+    private void clearDistances() {
+        byte[] zeros = new byte[STREAM_BUFFER];
+        for (MappedByteBuffer segment : distanceSegments) {
+            ByteBuffer view = segment.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+            }
+        }
+    }
+
+    /**
+     * 按下标递增的顺序读取当前层的所有路径点，把未访问的相邻路径点记为下一层
+     * 结束后下一层成为当前层
+     *
+     * @param next 下一层的步数
+     * @return 当前层的路径点数量
+     * @throws IOException 读写临时文件时的IO错误
+     */
+    private long expand(int next) throws IOException {
+        long count = 0;
+        RunMerger merger = new RunMerger(mergeRuns(runs), tail, tailSize);
+        try {
+            while (merger.hasNext()) {
+                long cell = merger.next();
+                int row = (int) (cell / width);
+                int col = (int) (cell % width);
+                visit(row - 1, col, next);
+                visit(row, col - 1, next);
+                visit(row, col + 1, next);
+                visit(row + 1, col, next);
+                count++;
+            }
+        } finally {
+            merger.close();
+        }
+        deleteRuns(runs);
+
+        //缓冲区中剩下的部分直接作为下一层在内存中的有序段
+        Arrays.sort(buffer, 0, bufferSize);
+        long[] t = tail;
+        tail = buffer;
+        tailSize = bufferSize;
+        buffer = t;
+        bufferSize = 0;
+
+        List<File> r = runs;
+        runs = nextRuns;
+        nextRuns = r;
+        return count;
+    }
+
+    /**
+     * 访问一个路径点，可通行且未访问过时记录步数并加入下一层
+     *
+     * @param row  所在行
+     * @param col  所在列
+     * @param step 到达的步数
+     * @throws IOException 写入临时文件时的IO错误
+     */
+    private void visit(int row, int col, int step) throws IOException {
+        if (!inside(row, col) || !isPassable(row, col)) {
+            return;
+        }
+        long cell = (long) row * width + col;
+        if (getDistance(cell) != 0) {
+            return;
+        }
+
+        setDistance(cell, step);
+        if (bufferSize == buffer.length) {
+            Arrays.sort(buffer);
+            nextRuns.add(writeRun(buffer, bufferSize));
+            bufferSize = 0;
+        }
+        buffer[bufferSize++] = cell;
+    }
+
+    /**
+     * 有序段过多时先分组归并，保证同时打开的临时文件不超过MAX_MERGE个
+     *
+     * @param files 有序段文件
+     * @return 归并后的有序段文件
+     * @throws IOException 读写临时文件时的IO错误
+     */
+    private List<File> mergeRuns(List<File> files) throws IOException {
+        while (files.size() > MAX_MERGE) {
+            List<File> merged = new ArrayList<>();
+            for (int i = 0; i < files.size(); i += MAX_MERGE) {
+                List<File> group = new ArrayList<>(files.subList(i, Math.min(i + MAX_MERGE, files.size())));
+                File file = File.createTempFile("maze-run", ".bin", tempDir);
+                try (RunMerger merger = new RunMerger(group, null, 0);
+                     RunWriter writer = new RunWriter(file)) {
+                    while (merger.hasNext()) {
+                        writer.write(merger.next());
+                    }
+                }
+                deleteRuns(group);
+                merged.add(file);
+            }
+            files.clear();
+            files.addAll(merged);
+        }
+        return files;
+    }
+
+    /**
+     * 把缓冲区中已排序的路径点写入一个新的临时文件
+     *
+     * @param cells 已排序的路径点
+     * @param size  路径点数量
+     * @return 写入的临时文件
+     * @throws IOException 写入临时文件时的IO错误
+     */
+    private File writeRun(long[] cells, int size) throws IOException {
+        File file = File.createTempFile("maze-run", ".bin", tempDir);
+        try (RunWriter writer = new RunWriter(file)) {
+            for (int i = 0; i < size; i++) {
+                writer.write(cells[i]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 删除有序段文件并清空列表
+     *
+     * @param files 有序段文件
+     */
+    private static void deleteRuns(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+        files.clear();
+    }
+
+    /**
+     * 判断行列是否在迷宫范围内
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表是否在范围内
+     */
+    private boolean inside(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width;
+    }
+
+    /**
+     * 判断路径点是否可通行
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表是否可通行
+     */
+    public boolean isPassable(int row, int col) {
+        long offset = FileHelper.BINARY_HEADER + ((long) row * rowWords + (col >>> 6)) * 8;
+        long word = mazeSegments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+        return (word >>> col & 1) == 0;
+    }
+
+    /**
+     * 获取最近一次求解中起点到指定路径点的最短路径长度
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 最短路径长度（起点为1，无法到达为0）
+     */
+    public int getDistance(int row, int col) {
+        return getDistance((long) row * width + col);
+    }
+
+    /**
+     * 读取步数表
+     *
+     * @param cell 路径点下标（行 * 宽度 + 列）
+     * @return 记录的步数
+     */
+    private int getDistance(long cell) {
+        long offset = cell * 4;
+        return distanceSegments[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * 写入步数表
+     *
+     * @param cell 路径点下标（行 * 宽度 + 列）
+     * @param step 步数
+     */
+    private void setDistance(long cell, int step) {
+        long offset = cell * 4;
+        distanceSegments[(int) (offset >>> SEGMENT_SHIFT)].putInt((int) (offset & SEGMENT_MASK), step);
+    }
+
+    /**
+     * 获取最近一次求解的BFS层数
+     *
+     * @return BFS层数
+     */
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    /**
+     * 获取最近一次求解中最大的一层的路径点数量
+     *
+     * @return 最大一层的路径点数量
+     */
+    public long getPeakLayer() {
+        return peakLayer;
+    }
+
+    /**
+     * 关闭迷宫文件与步数表文件，映射在被回收前仍然有效
+     *
+     * @throws IOException IO错误
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            mazeFile.close();
+        } finally {
+            if (distanceFile != null) {
+                distanceFile.close();
+            }
+        }
+    }
+
+    /**
+     * 有序段的写入类，相邻路径点下标的差值以变长整数写入
+     */
+    private static final class RunWriter implements Closeable {
+        private final DataOutputStream out;
+        private long last;
+
+        /**
+         * 构造方法
+         *
+         * @param file 写入的文件
+         * @throws IOException IO错误
+         */
+        private RunWriter(File file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER));
+        }
+
+        /**
+         * 写入一个路径点下标，必须不小于上一个写入的下标
+         *
+         * @param cell 路径点下标
+         * @throws IOException IO错误
+         */
+        private void write(long cell) throws IOException {
+            long delta = cell - last;
+            last = cell;
+            while ((delta & ~0x7fL) != 0) {
+                out.write((int) (delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            out.write((int) delta);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * 有序段的读取类
+     */
+    private static final class RunReader implements Comparable<RunReader> {
+        private final DataInputStream in;
+        private final long[] cells;
+        private final int size;
+        private int position;
+        private long current;
+
+        /**
+         * 从临时文件读取的构造方法
+         *
+         * @param file 有序段文件
+         * @throws IOException IO错误
+         */
+        private RunReader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), STREAM_BUFFER));
+            this.cells = null;
+            this.size = 0;
+        }
+
+        /**
+         * 从内存中的有序段读取的构造方法
+         *
+         * @param cells 已排序的路径点
+         * @param size  路径点数量
+         */
+        private RunReader(long[] cells, int size) {
+            this.in = null;
+            this.cells = cells;
+            this.size = size;
+        }
+
+        /**
+         * 读取下一个路径点下标到current
+         *
+         * @return 一个布尔值，代表是否还有路径点
+         * @throws IOException IO错误
+         */
+        private boolean advance() throws IOException {
+            if (in == null) {
+                if (position == size) {
+                    return false;
+                }
+                current = cells[position++];
+                return true;
+            }
+
+            int b = in.read();
+            if (b < 0) {
+                return false;
+            }
+            long delta = 0;
+            int shift = 0;
+            while ((b & 0x80) != 0) {
+                delta |= (long) (b & 0x7f) << shift;
+                shift += 7;
+                b = in.read();
+                if (b < 0) {
+                    throw new EOFException("有序段文件不完整");
+                }
+            }
+            current += delta | (long) b << shift;
+            return true;
+        }
+
+        /**
+         * 关闭读取的文件
+         *
+         * @throws IOException IO错误
+         */
+        private void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            return Long.compare(current, o.current);
+        }
+    }
+
+    /**
+     * 多个有序段的归并类，按下标递增的顺序输出所有路径点
+     */
+    private static final class RunMerger implements Closeable {
+        private final PriorityQueue<RunReader> heap = new PriorityQueue<>();
+        private final List<RunReader> readers = new ArrayList<>();
+
+        /**
+         * 构造方法
+         *
+         * @param files 有序段文件
+         * @param cells 内存中的有序段（null则没有）
+         * @param size  内存中有序段的路径点数量
+         * @throws IOException IO错误
+         */
+        private RunMerger(List<File> files, long[] cells, int size) throws IOException {
+            try {
+                for (File file : files) {
+                    readers.add(new RunReader(file));
+                }
+                if (cells != null) {
+                    readers.add(new RunReader(cells, size));
+                }
+                for (RunReader reader : readers) {
+                    if (reader.advance()) {
+                        heap.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * 判断是否还有路径点
+         *
+         * @return 一个布尔值，代表是否还有路径点
+         */
+        private boolean hasNext() {
+            return !heap.isEmpty();
+        }
+
+        /**
+         * 取出下一个路径点下标
+         *
+         * @return 路径点下标
+         * @throws IOException IO错误
+         */
+        private long next() throws IOException {
+            RunReader reader = heap.poll();
+            long cell = reader.current;
+            if (reader.advance()) {
+                heap.add(reader);
+            }
+            return cell;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
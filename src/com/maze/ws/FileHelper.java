@@ -1,7 +1,18 @@
 package com.maze.ws;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 字符串与文件IO相互转换处理的类
@@ -9,6 +20,27 @@ import java.io.FileInputStream;
  * @author Achan
  */
 public class FileHelper {
+    /**
+     * 迷宫二进制文件的标识（"MAZE"）
+     */
+    public static final int BINARY_MAGIC = 0x4D415A45;
+    /**
+     * 迷宫二进制文件的版本
+     */
+    public static final int BINARY_VERSION = 1;
+    /**
+     * 迷宫二进制文件头的字节数
+     * 文件头依次为标识、版本、宽度、高度、起点行列、终点行列，均为int；
+     * 其后按行存放迷宫，每行占(宽度 + 63) / 64个long，第j列对应第j % 64位，1为障碍物
+     */
+    public static final int BINARY_HEADER = 32;
+    /**
+     * 多层迷宫二进制文件的标识（"MZ3D"）
+     * 文件头依次为标识、版本、宽度、高度、层数、起点层行列、终点层行列，均为int；
+     * 其后依次存放障碍物与楼梯的位数组，各占(宽度 * 高度 * 层数 + 63) / 64个long，
+     * 下标为(层 * 高度 + 行) * 宽度 + 列的路径点对应第 下标 / 64 个long的第 下标 % 64 位
+     */
+    public static final int BINARY_MAGIC_3D = 0x4D5A3344;
 
     /**
      * 将指定路径的文件内容变为字符串
@@ -33,22 +65,203 @@ public class FileHelper {
     }
 
     /**
-     * 在指定的路径新建文件并将指定字符串输出
+     * 在指定的路径新建文件并将指定字符串输出（utf-8编码）
+     * 文件以CREATE_NEW方式创建，判断文件是否存在与创建文件是一个原子操作，多个线程写同一路径时只有一个能成功
      *
      * @param str  字符串内容
      * @param path 文件路径
-     * @throws java.io.IOException IO错误，可能文件已被锁定
+     * @throws FileAlreadyExistsException 文件已存在
+     * @throws java.io.IOException        IO错误，可能文件已被锁定
      */
     public static void outputToFile(String str, String path) throws java.io.IOException {
-        java.io.File file = new java.io.File(path);
+        try (BufferedWriter output = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            output.write(str);
+        }
+    }
+
+    /**
+     * 在指定的路径新建文件并将迷宫以二进制格式输出
+     *
+     * @param maze 需要输出的迷宫
+     * @param path 文件路径
+     * @throws FileAlreadyExistsException 文件已存在
+     * @throws java.io.IOException        IO错误，可能文件已被锁定
+     */
+    public static void outputToBinaryFile(Maze maze, String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(path),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 1 << 16))) {
+            writeBinary(maze, out);
+        }
+    }
 
-        if (file.exists()) {
-            System.out.println("A file has the same name,change one.");
-            System.exit(1);
+    /**
+     * 将迷宫以二进制格式写到输出流（不关闭输出流）
+     *
+     * @param maze 需要输出的迷宫
+     * @param out  输出流
+     * @throws java.io.IOException IO错误
+     * @throws IllegalArgumentException 迷宫不是四连通时抛出（二进制格式不记录拓扑）
+     */
+    static void writeBinary(Maze maze, DataOutputStream out) throws IOException {
+        if (maze.getTopology().type != Topology.Type.FOUR) {
+            throw new IllegalArgumentException("二进制格式只支持四连通的迷宫");
         }
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION);
+        out.writeInt(maze.width);
+        out.writeInt(maze.height);
+        out.writeInt(maze.getStartPoint().row);
+        out.writeInt(maze.getStartPoint().column);
+        out.writeInt(maze.getDestPoint().row);
+        out.writeInt(maze.getDestPoint().column);
 
-        java.io.PrintWriter output = new java.io.PrintWriter(file);
-        output.print(str);
-        output.close();
+        int rowWords = (maze.width + 63) >>> 6;
+        boolean rowMajor = maze.getLayout().getType() == CellLayout.Type.ROW_MAJOR;
+        for (int i = 0; i < maze.height; i++) {
+            for (int k = 0; k < rowWords; k++) {
+                if (rowMajor) {
+                    out.writeLong(maze.wallWord((long) i * rowWords + k));
+                    continue;
+                }
+                long word = 0;
+                for (int j = k << 6; j < Math.min(maze.width, (k + 1) << 6); j++) {
+                    if (!maze.isPassable(i, j)) {
+                        word |= 1L << j;
+                    }
+                }
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * 从指定路径的二进制文件读入迷宫
+     *
+     * @param path 文件路径
+     * @return 读入的迷宫
+     * @throws java.io.IOException IO错误或文件不是迷宫二进制文件
+     */
+    public static Maze readFromBinaryFile(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            return readBinary(in, path);
+        }
+    }
+
+    /**
+     * 从输入流读入二进制格式的迷宫，边读边写入迷宫，不缓存整个输入（不关闭输入流）
+     *
+     * @param in     输入流
+     * @param source 输入的来源，用于错误信息
+     * @return 读入的迷宫
+     * @throws java.io.IOException IO错误或输入不是迷宫二进制格式
+     */
+    static Maze readBinary(DataInputStream in, String source) throws IOException {
+        if (in.readInt() != BINARY_MAGIC || in.readInt() != BINARY_VERSION) {
+            throw new IOException("不是迷宫二进制文件：" + source);
+        }
+        int width = in.readInt();
+        int height = in.readInt();
+        Maze maze = new Maze(width, height, in.readInt(), in.readInt(), in.readInt(), in.readInt());
+
+        int rowWords = (width + 63) >>> 6;
+        for (int i = 0; i < height; i++) {
+            for (int k = 0; k < rowWords; k++) {
+                long word = in.readLong();
+                while (word != 0) {
+                    int j = (k << 6) + Long.numberOfTrailingZeros(word);
+                    if (j < width) {
+                        maze.setWall(i, j, true);
+                    }
+                    word &= word - 1;
+                }
+            }
+        }
+        return maze;
+    }
+
+    /**
+     * 在指定的路径新建文件并将多层迷宫以二进制格式输出
+     *
+     * @param maze 需要输出的迷宫
+     * @param path 文件路径
+     * @throws FileAlreadyExistsException 文件已存在
+     * @throws java.io.IOException        IO错误，可能文件已被锁定
+     */
+    public static void outputToBinaryFile(Maze3D maze, String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(path),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 1 << 16))) {
+            writeBinary3D(maze, out);
+        }
+    }
+
+    /**
+     * 将多层迷宫以二进制格式写到输出流（不关闭输出流）
+     *
+     * @param maze 需要输出的迷宫
+     * @param out  输出流
+     * @throws java.io.IOException IO错误
+     */
+    static void writeBinary3D(Maze3D maze, DataOutputStream out) throws IOException {
+        out.writeInt(BINARY_MAGIC_3D);
+        out.writeInt(BINARY_VERSION);
+        out.writeInt(maze.width);
+        out.writeInt(maze.height);
+        out.writeInt(maze.depth);
+        out.writeInt(maze.level(maze.getStart()));
+        out.writeInt(maze.row(maze.getStart()));
+        out.writeInt(maze.col(maze.getStart()));
+        out.writeInt(maze.level(maze.getDest()));
+        out.writeInt(maze.row(maze.getDest()));
+        out.writeInt(maze.col(maze.getDest()));
+
+        for (int k = 0; k < maze.words(); k++) {
+            out.writeLong(maze.wallWord(k));
+        }
+        for (int k = 0; k < maze.words(); k++) {
+            out.writeLong(maze.stairWord(k));
+        }
+    }
+
+    /**
+     * 从指定路径的二进制文件读入多层迷宫
+     *
+     * @param path 文件路径
+     * @return 读入的迷宫
+     * @throws java.io.IOException IO错误或文件不是多层迷宫二进制文件
+     */
+    public static Maze3D readMaze3DFromBinaryFile(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            return readBinary3D(in, path);
+        }
+    }
+
+    /**
+     * 从输入流读入二进制格式的多层迷宫（不关闭输入流）
+     * 障碍物先整字写入迷宫，楼梯读入后再与障碍物一起写入，只额外缓存楼梯的位数组
+     *
+     * @param in     输入流
+     * @param source 输入的来源，用于错误信息
+     * @return 读入的迷宫
+     * @throws java.io.IOException IO错误或输入不是多层迷宫二进制格式
+     */
+    static Maze3D readBinary3D(DataInputStream in, String source) throws IOException {
+        if (in.readInt() != BINARY_MAGIC_3D || in.readInt() != BINARY_VERSION) {
+            throw new IOException("不是多层迷宫二进制文件：" + source);
+        }
+        int width = in.readInt();
+        int height = in.readInt();
+        int depth = in.readInt();
+        Maze3D maze = new Maze3D(width, height, depth, in.readInt(), in.readInt(), in.readInt(),
+                in.readInt(), in.readInt(), in.readInt());
+
+        long[] walls = new long[maze.words()];
+        for (int k = 0; k < walls.length; k++) {
+            walls[k] = in.readLong();
+        }
+        for (int k = 0; k < walls.length; k++) {
+            maze.loadWord(k, walls[k], in.readLong());
+        }
+        return maze;
     }
 }
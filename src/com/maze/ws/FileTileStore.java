@@ -0,0 +1,97 @@
+package com.maze.ws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于文件的迷宫分块存储
+ * 第i块存放在文件的第i * 8192字节处，超出文件末尾的块视为全为0（全部可通行），
+ * 因此新建的空文件就是一个全部可通行的迷宫
+ *
+ * @author Wshine
+ */
+public class FileTileStore implements TileStore, Closeable {
+    private static final int CHUNK_BYTES = CellStore.CHUNK_WORDS * 8;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+    private long readCount;
+    private long writeCount;
+
+    /**
+     * 构造方法，文件不存在时新建
+     *
+     * @param path 文件路径
+     * @throws IOException IO错误
+     */
+    public FileTileStore(String path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+    }
+
+    @Override
+    public synchronized long[] read(int chunk, int words) throws IOException {
+        long offset = (long) chunk * CHUNK_BYTES;
+        readCount++;
+        if (offset >= channel.size()) {
+            return null;
+        }
+
+        buffer.clear().limit(words * 8);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+
+        long[] data = new long[words];
+        boolean empty = true;
+        for (int i = 0; i < buffer.remaining() / 8; i++) {
+            data[i] = buffer.getLong(i * 8);
+            empty &= data[i] == 0;
+        }
+        return empty ? null : data;
+    }
+
+    @Override
+    public synchronized void write(int chunk, long[] data) throws IOException {
+        long offset = (long) chunk * CHUNK_BYTES;
+        writeCount++;
+        buffer.clear();
+        for (long word : data) {
+            buffer.putLong(word);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     * 获取已读取的块数
+     *
+     * @return 已读取的块数
+     */
+    public synchronized long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * 获取已写入的块数
+     *
+     * @return 已写入的块数
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
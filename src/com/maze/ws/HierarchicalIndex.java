@@ -0,0 +1,634 @@
+package com.maze.ws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * 迷宫的分层寻路索引（HPA*）
+ * 迷宫被划分为边长固定的正方形区块，相邻区块边界上每段连续可通行的部分设置入口，
+ * 预先求出每个区块内各入口之间的最短距离；查询时先在由入口组成的抽象图上做A*搜索，再在区块内细化为完整路径，
+ * 适合对同一个不变的大迷宫进行大量起点终点不同的查询
+ * 得到的路径是可行的近似最短路径：入口只设置在边界段的中点或两端，路径长度可能略长于真正的最短路径
+ * 迷宫修改后调用update()即可只修补该路径点所在区块及其相邻区块
+ *
+ * @author Wshine
+ */
+public class HierarchicalIndex {
+    private static final int LONG_ENTRANCE = 6;
+
+    private final Maze maze;
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersY;
+    private final Cluster[] clusters;
+    private final List<List<Node[]>> eastBorders;
+    private final List<List<Node[]>> southBorders;
+
+    /**
+     * 入口路径点
+     */
+    private static final class Node {
+        final int row;
+        final int col;
+        final Cluster cluster;
+        final List<Node> links = new ArrayList<>(2);
+        int index;
+
+        /**
+         * 构造方法
+         *
+         * @param row     所在行
+         * @param col     所在列
+         * @param cluster 所在区块
+         */
+        Node(int row, int col, Cluster cluster) {
+            this.row = row;
+            this.col = col;
+            this.cluster = cluster;
+        }
+    }
+
+    /**
+     * 区块，保存区块内的入口与入口之间的最短距离（步数差，不可达为-1）
+     */
+    private final class Cluster {
+        final int id;
+        final int top;
+        final int left;
+        final int rows;
+        final int cols;
+        Map<Long, Node> byCell = new HashMap<>();
+        Node[] nodes = new Node[0];
+        int[][] dist = new int[0][];
+
+        /**
+         * 构造方法
+         *
+         * @param id 区块下标
+         */
+        Cluster(int id) {
+            this.id = id;
+            this.top = id / clustersX * clusterSize;
+            this.left = id % clustersX * clusterSize;
+            this.rows = Math.min(clusterSize, maze.height - top);
+            this.cols = Math.min(clusterSize, maze.width - left);
+        }
+
+        /**
+         * 获取区块内指定位置的入口，不存在时创建
+         *
+         * @param row 所在行
+         * @param col 所在列
+         * @return 该位置的入口
+         */
+        Node node(int row, int col) {
+            long key = (long) row * maze.width + col;
+            Node node = byCell.get(key);
+            if (node == null) {
+                node = new Node(row, col, this);
+                byCell.put(key, node);
+            }
+            return node;
+        }
+
+        /**
+         * 根据四条边界上的入口重建入口列表与区块内的距离表
+         */
+        void rebuild() {
+            Map<Long, Node> cells = new LinkedHashMap<>();
+            int cy = id / clustersX;
+            int cx = id % clustersX;
+            collect(cells, eastBorders.get(id), 0);
+            collect(cells, southBorders.get(id), 0);
+            if (cx > 0) {
+                collect(cells, eastBorders.get(id - 1), 1);
+            }
+            if (cy > 0) {
+                collect(cells, southBorders.get(id - clustersX), 1);
+            }
+
+            Node[] list = cells.values().toArray(new Node[0]);
+            for (int i = 0; i < list.length; i++) {
+                list[i].index = i;
+            }
+
+            int[][] table = new int[list.length][list.length];
+            boolean[] open = passable();
+            int[] d = new int[rows * cols];
+            int[] queue = new int[rows * cols];
+            for (int i = 0; i < list.length; i++) {
+                bfs(list[i].row, list[i].col, open, d, queue);
+                for (int j = 0; j < list.length; j++) {
+                    table[i][j] = d[local(list[j].row, list[j].col)];
+                }
+            }
+
+            byCell = cells;
+            nodes = list;
+            dist = table;
+        }
+
+        /**
+         * 把边界上属于该区块的入口加入集合
+         *
+         * @param cells 入口集合
+         * @param pairs 边界上的入口对
+         * @param side  入口对中属于该区块的一侧（0或1）
+         */
+        private void collect(Map<Long, Node> cells, List<Node[]> pairs, int side) {
+            for (Node[] pair : pairs) {
+                Node node = pair[side];
+                cells.put((long) node.row * maze.width + node.col, node);
+            }
+        }
+
+        /**
+         * 求区块内路径点的局部下标
+         *
+         * @param row 所在行
+         * @param col 所在列
+         * @return 局部下标
+         */
+        int local(int row, int col) {
+            return (row - top) * cols + (col - left);
+        }
+
+        /**
+         * 读出区块内每个路径点是否可通行
+         *
+         * @return 一个数组，下标为局部下标，值代表是否可通行
+         */
+        boolean[] passable() {
+            boolean[] open = new boolean[rows * cols];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    open[i * cols + j] = maze.isPassable(top + i, left + j);
+                }
+            }
+            return open;
+        }
+
+        /**
+         * 只在区块内进行的BFS
+         *
+         * @param row   起点所在行
+         * @param col   起点所在列
+         * @param open  区块内每个路径点是否可通行
+         * @param d     距离表（局部下标，不可达为-1）
+         * @param queue 队列所用的数组
+         */
+        void bfs(int row, int col, boolean[] open, int[] d, int[] queue) {
+            Arrays.fill(d, -1);
+            int head = 0;
+            int tail = 0;
+            d[local(row, col)] = 0;
+            queue[tail++] = local(row, col);
+            while (head < tail) {
+                int p = queue[head++];
+                int r = top + p / cols;
+                int c = left + p % cols;
+                int next = d[p] + 1;
+                if (r > top && d[p - cols] < 0 && open[p - cols]) {
+                    d[p - cols] = next;
+                    queue[tail++] = p - cols;
+                }
+                if (r < top + rows - 1 && d[p + cols] < 0 && open[p + cols]) {
+                    d[p + cols] = next;
+                    queue[tail++] = p + cols;
+                }
+                if (c > left && d[p - 1] < 0 && open[p - 1]) {
+                    d[p - 1] = next;
+                    queue[tail++] = p - 1;
+                }
+                if (c < left + cols - 1 && d[p + 1] < 0 && open[p + 1]) {
+                    d[p + 1] = next;
+                    queue[tail++] = p + 1;
+                }
+            }
+        }
+
+        /**
+         * 在区块内求两点之间的一条最短路径并加入路径（不包含起点）
+         *
+         * @param route 需要加入的路径
+         * @param fromRow 起点所在行
+         * @param fromCol 起点所在列
+         * @param toRow   终点所在行
+         * @param toCol   终点所在列
+         * @throws IllegalStateException 区块内从起点无法到达终点（抽象路径与区块的距离表不一致）时抛出
+         */
+        void walk(Route route, int fromRow, int fromCol, int toRow, int toCol) {
+            int[] d = new int[rows * cols];
+            bfs(toRow, toCol, passable(), d, new int[rows * cols]);
+
+            //从起点出发，每次走向离终点更近一步的相邻路径点
+            int r = fromRow;
+            int c = fromCol;
+            while (r != toRow || c != toCol) {
+                int next = d[local(r, c)] - 1;
+                if (next < 0) {
+                    throw new IllegalStateException("区块内无法从(" + r + "," + c + ")到达(" + toRow + "," + toCol + ")");
+                }
+                if (r > top && d[local(r - 1, c)] == next) {
+                    r--;
+                } else if (r < top + rows - 1 && d[local(r + 1, c)] == next) {
+                    r++;
+                } else if (c > left && d[local(r, c - 1)] == next) {
+                    c--;
+                } else if (c < left + cols - 1 && d[local(r, c + 1)] == next) {
+                    c++;
+                } else {
+                    throw new IllegalStateException("区块内(" + r + "," + c + ")没有离终点更近的相邻路径点");
+                }
+                route.addPoint(maze.getUnit(r, c));
+            }
+        }
+    }
+
+    /**
+     * 构造方法，区块边长为32
+     *
+     * @param maze 需要建立索引的迷宫
+     */
+    public HierarchicalIndex(Maze maze) {
+        this(maze, 32);
+    }
+
+    /**
+     * 构造方法，并行地为所有区块建立距离表（按需加载的迷宫不能被并发读取，逐个建立）
+     *
+     * @param maze        需要建立索引的迷宫
+     * @param clusterSize 区块边长
+     * @throws IllegalArgumentException 区块边长过小或迷宫不是四连通时抛出
+     */
+    public HierarchicalIndex(Maze maze, int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("区块边长至少为2");
+        }
+        if (maze.getTopology().type != Topology.Type.FOUR) {
+            throw new IllegalArgumentException("分层索引只支持四连通的迷宫");
+        }
+
+        this.maze = maze;
+        this.clusterSize = clusterSize;
+        this.clustersX = (maze.width + clusterSize - 1) / clusterSize;
+        this.clustersY = (maze.height + clusterSize - 1) / clusterSize;
+        this.clusters = new Cluster[clustersX * clustersY];
+        this.eastBorders = new ArrayList<>(clusters.length);
+        this.southBorders = new ArrayList<>(clusters.length);
+        for (int i = 0; i < clusters.length; i++) {
+            clusters[i] = new Cluster(i);
+            eastBorders.add(new ArrayList<>());
+            southBorders.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < clusters.length; i++) {
+            buildBorders(i);
+        }
+        //按需加载的迷宫读取时也会换入换出块，不能被多个线程同时读取
+        IntStream stream = IntStream.range(0, clusters.length);
+        if (!maze.isLazy()) {
+            stream = stream.parallel();
+        }
+        stream.forEach(i -> clusters[i].rebuild());
+    }
+
+    /**
+     * 重新计算区块东侧与南侧边界上的入口
+     *
+     * @param id 区块下标
+     */
+    private void buildBorders(int id) {
+        Cluster cluster = clusters[id];
+        int cx = id % clustersX;
+        int cy = id / clustersX;
+
+        unlink(eastBorders.get(id));
+        if (cx < clustersX - 1) {
+            Cluster east = clusters[id + 1];
+            int col = cluster.left + cluster.cols - 1;
+            int runStart = -1;
+            for (int r = cluster.top; r <= cluster.top + cluster.rows; r++) {
+                boolean open = r < cluster.top + cluster.rows && maze.isPassable(r, col) && maze.isPassable(r, col + 1);
+                if (open && runStart < 0) {
+                    runStart = r;
+                } else if (!open && runStart >= 0) {
+                    for (int e : entrances(runStart, r - 1)) {
+                        link(eastBorders.get(id), cluster.node(e, col), east.node(e, col + 1));
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+
+        unlink(southBorders.get(id));
+        if (cy < clustersY - 1) {
+            Cluster south = clusters[id + clustersX];
+            int row = cluster.top + cluster.rows - 1;
+            int runStart = -1;
+            for (int c = cluster.left; c <= cluster.left + cluster.cols; c++) {
+                boolean open = c < cluster.left + cluster.cols && maze.isPassable(row, c) && maze.isPassable(row + 1, c);
+                if (open && runStart < 0) {
+                    runStart = c;
+                } else if (!open && runStart >= 0) {
+                    for (int e : entrances(runStart, c - 1)) {
+                        link(southBorders.get(id), cluster.node(row, e), south.node(row + 1, e));
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 求一段连续可通行的边界上入口的位置：较短的段取中点，较长的段取两端
+     *
+     * @param from 段的起始位置
+     * @param to   段的结束位置
+     * @return 入口的位置
+     */
+    private static int[] entrances(int from, int to) {
+        if (to - from + 1 < LONG_ENTRANCE) {
+            return new int[]{(from + to) >>> 1};
+        }
+        return new int[]{from, to};
+    }
+
+    /**
+     * 连接边界两侧的一对入口
+     *
+     * @param pairs 边界上的入口对
+     * @param a     一侧的入口
+     * @param b     另一侧的入口
+     */
+    private static void link(List<Node[]> pairs, Node a, Node b) {
+        a.links.add(b);
+        b.links.add(a);
+        pairs.add(new Node[]{a, b});
+    }
+
+    /**
+     * 断开边界上所有入口对的连接并清空
+     *
+     * @param pairs 边界上的入口对
+     */
+    private static void unlink(List<Node[]> pairs) {
+        for (Node[] pair : pairs) {
+            pair[0].links.remove(pair[1]);
+            pair[1].links.remove(pair[0]);
+        }
+        pairs.clear();
+    }
+
+    /**
+     * 迷宫中的一个路径点被修改后修补索引
+     * 重新计算该路径点所在区块四条边界上的入口，并重建该区块与相邻区块的距离表
+     *
+     * @param row 被修改的路径点所在行
+     * @param col 被修改的路径点所在列
+     */
+    public void update(int row, int col) {
+        int cx = col / clusterSize;
+        int cy = row / clusterSize;
+        int id = cy * clustersX + cx;
+
+        buildBorders(id);
+        if (cx > 0) {
+            buildBorders(id - 1);
+        }
+        if (cy > 0) {
+            buildBorders(id - clustersX);
+        }
+
+        clusters[id].rebuild();
+        if (cx > 0) {
+            clusters[id - 1].rebuild();
+        }
+        if (cx < clustersX - 1) {
+            clusters[id + 1].rebuild();
+        }
+        if (cy > 0) {
+            clusters[id - clustersX].rebuild();
+        }
+        if (cy < clustersY - 1) {
+            clusters[id + clustersX].rebuild();
+        }
+    }
+
+    /**
+     * 求两点之间的近似最短路径长度
+     *
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @return 路径长度（-1则无法到达）
+     */
+    public int distance(int startRow, int startCol, int destRow, int destCol) {
+        Search search = search(startRow, startCol, destRow, destCol);
+        return search == null ? -1 : search.cost + 1;
+    }
+
+    /**
+     * 求两点之间的一条近似最短路径
+     *
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @return 求得的路径（无法到达则为null）
+     */
+    public Route findRoute(int startRow, int startCol, int destRow, int destCol) {
+        Search search = search(startRow, startCol, destRow, destCol);
+        if (search == null) {
+            return null;
+        }
+
+        Route route = new Route(maze);
+        route.addPoint(maze.getUnit(startRow, startCol));
+        int r = startRow;
+        int c = startCol;
+        Cluster cluster = clusterOf(startRow, startCol);
+        for (Node node : search.path) {
+            if (node.cluster == cluster) {
+                cluster.walk(route, r, c, node.row, node.col);
+            } else {
+                //经过边界上的入口对进入相邻区块
+                route.addPoint(maze.getUnit(node.row, node.col));
+            }
+            r = node.row;
+            c = node.col;
+            cluster = node.cluster;
+        }
+        cluster.walk(route, r, c, destRow, destCol);
+        return route;
+    }
+
+    /**
+     * 抽象图上的搜索结果
+     */
+    private static final class Search {
+        final int cost;
+        final List<Node> path;
+
+        /**
+         * 构造方法
+         *
+         * @param cost 路径的步数差
+         * @param path 依次经过的入口
+         */
+        Search(int cost, List<Node> path) {
+            this.cost = cost;
+            this.path = path;
+        }
+    }
+
+    /**
+     * 在抽象图上进行A*搜索
+     * 起点先在所在区块内连接到各入口，终点所在区块的入口再连接到终点；两点在同一区块时也考虑区块内的直接路径
+     *
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @return 搜索结果（无法到达则为null）
+     */
+    private Search search(int startRow, int startCol, int destRow, int destCol) {
+        if (maze.getUnit(startRow, startCol) == null || maze.getUnit(destRow, destCol) == null) {
+            throw new IllegalArgumentException("起点或终点不在迷宫范围内");
+        }
+        if (!maze.isPassable(startRow, startCol) || !maze.isPassable(destRow, destCol)) {
+            return null;
+        }
+
+        Cluster from = clusterOf(startRow, startCol);
+        Cluster to = clusterOf(destRow, destCol);
+        int[] fromDist = new int[from.rows * from.cols];
+        int[] toDist = new int[to.rows * to.cols];
+        int[] queue = new int[clusterSize * clusterSize];
+        from.bfs(startRow, startCol, from.passable(), fromDist, queue);
+        to.bfs(destRow, destCol, to.passable(), toDist, queue);
+
+        int best = from == to ? fromDist[from.local(destRow, destCol)] : -1;
+        Node bestLast = null;
+
+        Map<Node, Integer> cost = new HashMap<>();
+        Map<Node, Node> parent = new HashMap<>();
+        PriorityQueue<long[]> open = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        List<Node> indexed = new ArrayList<>();
+        for (Node node : from.nodes) {
+            int d = fromDist[from.local(node.row, node.col)];
+            if (d >= 0) {
+                cost.put(node, d);
+                open.add(new long[]{d + heuristic(node, destRow, destCol), d, indexed.size()});
+                indexed.add(node);
+            }
+        }
+
+        while (!open.isEmpty()) {
+            long[] entry = open.poll();
+            if (best >= 0 && entry[0] >= best) {
+                break;
+            }
+            Node node = indexed.get((int) entry[2]);
+            int g = (int) entry[1];
+            if (cost.get(node) != g) {
+                continue;
+            }
+
+            if (node.cluster == to) {
+                int d = toDist[to.local(node.row, node.col)];
+                if (d >= 0 && (best < 0 || g + d < best)) {
+                    best = g + d;
+                    bestLast = node;
+                }
+            }
+
+            int[] row = node.cluster.dist[node.index];
+            for (Node next : node.cluster.nodes) {
+                if (row[next.index] > 0) {
+                    relax(node, next, g + row[next.index], destRow, destCol, cost, parent, open, indexed);
+                }
+            }
+            for (Node next : node.links) {
+                relax(node, next, g + 1, destRow, destCol, cost, parent, open, indexed);
+            }
+        }
+
+        if (best < 0) {
+            return null;
+        }
+        List<Node> path = new ArrayList<>();
+        for (Node node = bestLast; node != null; node = parent.get(node)) {
+            path.add(0, node);
+        }
+        return new Search(best, path);
+    }
+
+    /**
+     * 松弛抽象图上的一条边
+     *
+     * @param node    当前入口
+     * @param next    相邻入口
+     * @param g       经过当前入口到达相邻入口的步数差
+     * @param destRow 终点所在行
+     * @param destCol 终点所在列
+     * @param cost    已知的最小步数差
+     * @param parent  搜索树中的前驱
+     * @param open    待扩展的入口
+     * @param indexed 入口的编号表
+     */
+    private void relax(Node node, Node next, int g, int destRow, int destCol, Map<Node, Integer> cost,
+                       Map<Node, Node> parent, PriorityQueue<long[]> open, List<Node> indexed) {
+        Integer old = cost.get(next);
+        if (old != null && old <= g) {
+            return;
+        }
+        cost.put(next, g);
+        parent.put(next, node);
+        open.add(new long[]{g + heuristic(next, destRow, destCol), g, indexed.size()});
+        indexed.add(next);
+    }
+
+    /**
+     * A*的估价函数：到终点的曼哈顿距离
+     *
+     * @param node    入口
+     * @param destRow 终点所在行
+     * @param destCol 终点所在列
+     * @return 估价
+     */
+    private static int heuristic(Node node, int destRow, int destCol) {
+        return Math.abs(node.row - destRow) + Math.abs(node.col - destCol);
+    }
+
+    /**
+     * 求路径点所在的区块
+     *
+     * @param row 所在行
+     * @param col 所在列
+     * @return 所在区块
+     */
+    private Cluster clusterOf(int row, int col) {
+        return clusters[row / clusterSize * clustersX + col / clusterSize];
+    }
+
+    /**
+     * 获取抽象图中入口的总数
+     *
+     * @return 入口的总数
+     */
+    public int getNodeCount() {
+        int count = 0;
+        for (Cluster cluster : clusters) {
+            count += cluster.nodes.length;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,173 @@
+package com.maze.ws;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 直方图类
+ * 以对数线性分桶记录非负整数样本，占用固定内存，可在多线程下并发记录，
+ * 用于统计耗时、步数等数据的分位数
+ *
+ * @author Wshine
+ */
+public class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * 记录一个样本，负数按0处理
+     *
+     * @param value 样本值
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+        m = min.get();
+        while (value < m && !min.compareAndSet(m, value)) {
+            m = min.get();
+        }
+    }
+
+    /**
+     * 获取样本数量
+     *
+     * @return 样本数量
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 获取样本总和
+     *
+     * @return 样本总和
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * 获取样本平均值
+     *
+     * @return 样本平均值（无样本时为0）
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    /**
+     * 获取样本最大值
+     *
+     * @return 样本最大值（无样本时为0）
+     */
+    public long getMax() {
+        return count.get() == 0 ? 0 : max.get();
+    }
+
+    /**
+     * 获取样本最小值
+     *
+     * @return 样本最小值（无样本时为0）
+     */
+    public long getMin() {
+        return count.get() == 0 ? 0 : min.get();
+    }
+
+    /**
+     * 获取指定分位数的近似值（相对误差不超过1/16）
+     *
+     * @param percentile 分位数（0~100）
+     * @return 指定分位数的近似值（无样本时为0）
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * n);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.max(getMin(), Math.min(getMax(), upperBound(i)));
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * 清空所有样本
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(Long.MIN_VALUE);
+        min.set(Long.MAX_VALUE);
+    }
+
+    /**
+     * 求样本值所在的桶
+     *
+     * @param value 样本值（非负）
+     * @return 桶的下标
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 求指定桶能表示的最大样本值
+     *
+     * @param bucket 桶的下标
+     * @return 该桶的上界（闭区间）
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_COUNT - 1;
+        long low = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + getCount()
+                + " avg=" + String.format("%.2f", getMean())
+                + " p50=" + getPercentile(50)
+                + " p90=" + getPercentile(90)
+                + " p99=" + getPercentile(99)
+                + " max=" + getMax();
+    }
+}
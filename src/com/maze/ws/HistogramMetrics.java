@@ -0,0 +1,81 @@
+package com.maze.ws;
+
+/**
+ * 以直方图汇总性能指标的实现
+ * 可同时挂到多个求解器与生成器上，统计一批迷宫的指标分布
+ *
+ * @author Wshine
+ */
+public class HistogramMetrics implements MazeMetrics {
+    public final Histogram expanded = new Histogram();
+    public final Histogram peakQueue = new Histogram();
+    public final Histogram routes = new Histogram();
+    public final Histogram bfsNanos = new Histogram();
+    public final Histogram recoverNanos = new Histogram();
+
+    public final Histogram attempts = new Histogram();
+    public final Histogram retries = new Histogram();
+    public final Histogram genNanos = new Histogram();
+    public final Histogram digNanos = new Histogram();
+    public final Histogram fillNanos = new Histogram();
+
+    @Override
+    public void onSolve(Maze maze, int expanded, int peakQueue, int routes, long bfsNanos, long recoverNanos) {
+        this.expanded.record(expanded);
+        this.peakQueue.record(peakQueue);
+        this.routes.record(routes);
+        this.bfsNanos.record(bfsNanos);
+        this.recoverNanos.record(recoverNanos);
+    }
+
+    @Override
+    public void onGenerate(Maze maze, int attempts, int retries, long genNanos, long digNanos, long fillNanos) {
+        this.attempts.record(attempts);
+        this.retries.record(retries);
+        this.genNanos.record(genNanos);
+        this.digNanos.record(digNanos);
+        this.fillNanos.record(fillNanos);
+    }
+
+    /**
+     * 清空所有已记录的指标
+     */
+    public void reset() {
+        for (Histogram h : all()) {
+            h.reset();
+        }
+    }
+
+    /**
+     * 获取所有的直方图
+     *
+     * @return 一个数组，包含该对象的全部直方图
+     */
+    private Histogram[] all() {
+        return new Histogram[]{expanded, peakQueue, routes, bfsNanos, recoverNanos,
+                attempts, retries, genNanos, digNanos, fillNanos};
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        if (expanded.getCount() > 0) {
+            s.append("求解：\n");
+            s.append("  展开路径点数   ").append(expanded).append("\n");
+            s.append("  队列峰值       ").append(peakQueue).append("\n");
+            s.append("  最短路径数     ").append(routes).append("\n");
+            s.append("  BFS耗时(ns)    ").append(bfsNanos).append("\n");
+            s.append("  回溯耗时(ns)   ").append(recoverNanos).append("\n");
+        }
+        if (attempts.getCount() > 0) {
+            s.append("生成：\n");
+            s.append("  genCore次数    ").append(attempts).append("\n");
+            s.append("  重新生成次数   ").append(retries).append("\n");
+            s.append("  genCore耗时(ns) ").append(genNanos).append("\n");
+            s.append("  挖洞耗时(ns)   ").append(digNanos).append("\n");
+            s.append("  填充耗时(ns)   ").append(fillNanos).append("\n");
+        }
+
+        return s.toString();
+    }
+}
@@ -1,21 +1,46 @@
 package com.maze.ws;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * 迷宫类
  * 包含简化迷宫处理相关的方法
+ * 路径点的值按位存储在写时复制的分块存储中，路径点对象只在被访问时才创建；
+ * 也可以通过Maze.open()从外部的分块存储中按需加载
+ * 可通行路径点可以另外带有1~MAX_COST的通行代价（默认为1），代价按行存储在第一次设置非1代价时才分配的字节数组中
+ * 路径点之间的相邻关系由迷宫的拓扑决定（默认为四连通），拓扑在构造时确定，只能通过withTopology()得到其它拓扑的拷贝
+ * equals()与hashCode()比较的是迷宫内容，修改路径点、通行代价、起点或终点后哈希值随之改变；
+ * 迷宫作为HashMap或HashSet的键时，放入后再修改就再也找不到，因此应先用freeze()得到不可修改的快照再作为键
  *
  * @author Wshine
  */
 public class Maze {
     static final int MAX_SIZE = 50000;
+    /**
+     * 路径点通行代价的最大值
+     */
+    public static final int MAX_COST = 256;
+    private static final long CELL_SALT = 0x6a09e667f3bcc909L;
+    private static final long START_SALT = 0xbb67ae8584caa73bL;
+    private static final long DEST_SALT = 0x3c6ef372fe94f82bL;
+    private static final long SIZE_SALT = 0xa54ff53a5f1d36f1L;
+    private static final long COST_SALT = 0x510e527fade682d1L;
+    private static final long TOPOLOGY_SALT = 0x9b05688c2b3e6c1fL;
     public final int width;
     public final int height;
-    private final Point[][] data;
+    private final CellStore cells;
+    private final CellLayout layout;
+    private final Topology topology;
+    private Point[][] views;
+    private long wallCount;
+    private byte[] costs;
+    private int weightedCount;
     private Point start;
     private Point dest;
+    private long hash;
+    private final boolean frozen;
 
     /**
      * 路径点类
@@ -27,8 +52,10 @@ public class Maze {
         public final int row;
         public final int column;
         public final Maze maze;
+        /**
+         * 供调用者自由使用的染色标记，不属于迷宫内容；生成器与求解器不会读写该值
+         */
         public int color = 0;
-        private int value;
 
         /**
          * 构造方法，构造迷宫中的一个路径点对象
@@ -36,25 +63,25 @@ public class Maze {
          * @param maze   绑定的迷宫
          * @param row    行位置
          * @param column 列位置
-         * @param value  值（0为可通行，1为障碍物）
          */
-        private Point(Maze maze, int row, int column, int value) {
+        private Point(Maze maze, int row, int column) {
             this.row = row;
             this.column = column;
-            setValue(value);
             this.maze = maze;
         }
 
         /**
-         * 设置该路径点的值
+         * 设置该路径点的值，同时增量更新所属迷宫的哈希值
          *
          * @param value 需要设置的值（0或1）
+         * @throws IllegalStateException 所属迷宫已被冻结时抛出
          */
         public void setValue(int value) {
+            maze.checkMutable();
             if (!validate(value, 0, 1)) {
                 throw new IllegalArgumentException("迷宫块的数字只能为0和1");
             }
-            this.value = value;
+            maze.setCell(row, column, value == 1);
         }
 
         /**
@@ -63,29 +90,60 @@ public class Maze {
          * @return 该路径点的值
          */
         public int getValue() {
-            return this.value;
+            return maze.isPassable(row, column) ? 0 : 1;
+        }
+
+        /**
+         * 设置该路径点的通行代价
+         *
+         * @param cost 通行代价（1~MAX_COST）
+         * @throws IllegalStateException 所属迷宫已被冻结时抛出
+         */
+        public void setCost(int cost) {
+            maze.setCost(row, column, cost);
         }
 
         /**
-         * 获取两个路径点之间的曼哈顿距离
+         * 获取该路径点的通行代价
+         *
+         * @return 通行代价（未设置时为1）
+         */
+        public int getCost() {
+            return maze.cost(row, column);
+        }
+
+        /**
+         * 获取两个路径点之间不考虑障碍物时最短路径的路径点数（四连通时为曼哈顿距离加1）
          *
          * @param p 另一个路径点
-         * @return 两点之间的曼哈顿距离
+         * @return 两点之间的距离
          */
         public int distance(Point p) {
-            return Math.abs(this.row - p.row) + Math.abs(this.column - p.column) + 1;
+            return maze.topology.distance(row, column, p.row, p.column) + 1;
         }
 
         /**
-         * 获得该路径点的一个拷贝
+         * 判断两个路径点是否为同一迷宫中的同一位置
          *
-         * @param maze 拷贝后所在的迷宫
-         * @return 该路径点的一个拷贝
+         * @param o 另一个对象
+         * @return 一个布尔值，代表是否为同一路径点
          */
-        private Point getCopy(Maze maze) {
-            Point copy = new Point(maze, row, column, value);
-            copy.color = color;
-            return copy;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Point)) {
+                return false;
+            }
+
+            Point p = (Point) o;
+            return maze == p.maze && row == p.row && column == p.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return row * 31 + column;
         }
     }
 
@@ -100,17 +158,51 @@ public class Maze {
      * @param destCol  终点所在列
      */
     public Maze(int width, int height, int startRow, int startCol, int destRow, int destCol) {
+        this(width, height, startRow, startCol, destRow, destCol, CellLayout.Type.ROW_MAJOR);
+    }
+
+    /**
+     * 构造方法，构造一个使用指定存储布局的空迷宫
+     *
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @param layout   存储布局类型
+     */
+    public Maze(int width, int height, int startRow, int startCol, int destRow, int destCol, CellLayout.Type layout) {
+        this(width, height, startRow, startCol, destRow, destCol, layout, Topology.Type.FOUR);
+    }
+
+    /**
+     * 构造方法，构造一个使用指定存储布局与拓扑的空迷宫
+     *
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @param layout   存储布局类型
+     * @param topology 拓扑类型
+     */
+    public Maze(int width, int height, int startRow, int startCol, int destRow, int destCol, CellLayout.Type layout,
+                Topology.Type topology) {
         if (!validate(width, 1, MAX_SIZE) || !validate(height, 1, MAX_SIZE)) {
             throw new IllegalArgumentException("迷宫宽高过大，宽度和高度只能为1~50000之间的整数");
         }
 
         this.width = width;
         this.height = height;
-        this.data = new Point[height][width];
-        init(0);
+        this.hash = sizeKey(width, height) ^ topologyKey(topology);
+        this.layout = CellLayout.of(layout, width, height);
+        this.topology = Topology.of(topology, width, height);
+        this.cells = new CellStore(this.layout.size() >>> 6);
         setStartPoint(startRow, startCol);
         setDestPoint(destRow, destCol);
-
+        this.frozen = false;
     }
 
     /**
@@ -130,37 +222,86 @@ public class Maze {
 
         this.width = rawMaze[0].length;
         this.height = rawMaze.length;
-        this.data = new Point[height][width];
+        this.hash = sizeKey(width, height);
+        this.layout = CellLayout.of(CellLayout.Type.ROW_MAJOR, width, height);
+        this.topology = Topology.of(Topology.Type.FOUR, width, height);
+        this.cells = new CellStore(layout.size() >>> 6);
 
         for (int i = 0; i < rawMaze.length; i++) {
             for (int j = 0; j < rawMaze[i].length; j++) {
-                this.data[i][j] = new Point(this, i, j, rawMaze[i][j]);
+                if (!validate(rawMaze[i][j], 0, 1)) {
+                    throw new IllegalArgumentException("迷宫块的数字只能为0和1");
+                }
+                setCell(i, j, rawMaze[i][j] == 1);
             }
         }
 
         setStartPoint(startRow, startCol);
         setDestPoint(destRow, destCol);
+        this.frozen = false;
     }
 
     /**
-     * 给拷贝用的构造方法
+     * 构造方法，构造一个从分块存储中按需加载的迷宫，使用Z序布局
+     * 构造时顺序读一遍所有块以计算哈希值与障碍物数量，之后只有被访问的块才会常驻内存
      *
-     * @param maze 用于拷贝的迷宫对象
+     * @param store    分块存储
+     * @param budget   最多常驻内存的块数
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
      */
-    private Maze(Maze maze) {
-        this.width = maze.width;
-        this.height = maze.height;
-        this.data = new Point[height][width];
+    private Maze(TileStore store, int budget, int width, int height, int startRow, int startCol, int destRow, int destCol) {
+        if (!validate(width, 1, MAX_SIZE) || !validate(height, 1, MAX_SIZE)) {
+            throw new IllegalArgumentException("迷宫宽高过大，宽度和高度只能为1~50000之间的整数");
+        }
 
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                data[i][j] = maze.data[i][j].getCopy(this);
+        this.width = width;
+        this.height = height;
+        this.hash = sizeKey(width, height);
+        this.layout = CellLayout.of(CellLayout.Type.MORTON, width, height);
+        this.topology = Topology.of(Topology.Type.FOUR, width, height);
+        this.cells = new CellStore(layout.size() >>> 6, store, budget);
+
+        for (long w = 0; w < cells.words; w++) {
+            long word = cells.getWord(w) & layout.validMask(w);
+            wallCount += Long.bitCount(word);
+            while (word != 0) {
+                long bit = w << 6 | Long.numberOfTrailingZeros(word);
+                hash ^= cellKey(layout.row(bit), layout.col(bit));
+                word &= word - 1;
             }
         }
 
-        setStartPoint(maze.start.row, maze.start.column);
-        setDestPoint(maze.dest.row, maze.dest.column);
+        setStartPoint(startRow, startCol);
+        setDestPoint(destRow, destCol);
+        this.frozen = false;
+    }
 
+    /**
+     * 给拷贝用的构造方法
+     * 拷贝与原迷宫共享位存储的所有块，双方第一次修改某块时才复制该块；
+     * 通行代价（如果有）直接复制；路径点的颜色不属于迷宫内容，不会被拷贝
+     *
+     * @param maze   用于拷贝的迷宫对象
+     * @param frozen 拷贝是否为冻结的快照
+     */
+    private Maze(Maze maze, boolean frozen) {
+        this.width = maze.width;
+        this.height = maze.height;
+        this.hash = maze.hash;
+        this.layout = maze.layout;
+        this.topology = maze.topology;
+        this.cells = new CellStore(maze.cells);
+        this.wallCount = maze.wallCount;
+        this.costs = maze.costs == null ? null : maze.costs.clone();
+        this.weightedCount = maze.weightedCount;
+        this.start = view(maze.start.row, maze.start.column);
+        this.dest = view(maze.dest.row, maze.dest.column);
+        this.frozen = frozen;
     }
 
     /**
@@ -179,15 +320,29 @@ public class Maze {
      * 初始化迷宫中的所有路径点为指定值
      *
      * @param value 初始化的值（0或1）
+     * @throws IllegalStateException 迷宫已被冻结时抛出
      */
     public void init(int value) {
-        for (int i = 0; i < this.height; i++) {
-            for (int j = 0; j < this.width; j++) {
-                if (data[i][j] == null) {
-                    this.data[i][j] = new Point(this, i, j, value);
-                } else {
-                    this.data[i][j].setValue(value);
-                }
+        checkMutable();
+        if (!validate(value, 0, 1)) {
+            throw new IllegalArgumentException("迷宫块的数字只能为0和1");
+        }
+
+        //按字整体写入（对齐用的空位保持为0），只对值发生变化的路径点更新哈希值
+        for (long w = 0; w < cells.words; w++) {
+            long old = cells.getWord(w);
+            long now = value == 0 ? 0 : layout.validMask(w);
+            long diff = old ^ now;
+            if (diff == 0) {
+                continue;
+            }
+
+            cells.setWord(w, now);
+            wallCount += Long.bitCount(now) - Long.bitCount(old);
+            while (diff != 0) {
+                long bit = w << 6 | Long.numberOfTrailingZeros(diff);
+                hash ^= cellKey(layout.row(bit), layout.col(bit));
+                diff &= diff - 1;
             }
         }
     }
@@ -196,14 +351,13 @@ public class Maze {
      * 初始化迷宫中的所有路径点为指定颜色
      *
      * @param color 指定的颜色
+     * @throws IllegalStateException 迷宫已被冻结时抛出
      */
     public void initColor(int color) {
+        checkMutable();
         for (int i = 0; i < this.height; i++) {
             for (int j = 0; j < this.width; j++) {
-                if (data[i][j] == null) {
-                    this.data[i][j] = new Point(this, i, j, 0);
-                }
-                this.data[i][j].color = color;
+                view(i, j).color = color;
             }
         }
     }
@@ -219,7 +373,38 @@ public class Maze {
         if (!validate(row, 0, height - 1) || !validate(col, 0, width - 1)) {
             return null;
         }
-        return this.data[row][col];
+        return view(row, col);
+    }
+
+    /**
+     * 取得指定行列对应的路径点对象，第一次访问时才创建
+     * 并发访问时同一位置可能创建出多个对象，路径点按位置比较相等，因此不影响结果
+     * 按需加载的迷宫不缓存路径点对象（否则每访问一行都要分配整行的对象表），每次访问都创建新对象
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 该位置的路径点对象
+     */
+    private Point view(int row, int col) {
+        if (cells.isBacked()) {
+            return new Point(this, row, col);
+        }
+        Point[][] v = views;
+        if (v == null) {
+            v = new Point[height][];
+            views = v;
+        }
+        Point[] r = v[row];
+        if (r == null) {
+            r = new Point[width];
+            v[row] = r;
+        }
+        Point p = r[col];
+        if (p == null) {
+            p = new Point(this, row, col);
+            r[col] = p;
+        }
+        return p;
     }
 
     /**
@@ -236,16 +421,19 @@ public class Maze {
      *
      * @param row 起点行
      * @param col 起点列
+     * @throws IllegalStateException 迷宫已被冻结时抛出
      */
     public void setStartPoint(int row, int col) {
+        checkMutable();
         if (!validate(row, 0, height - 1) || !validate(col, 0, width - 1)) {
             throw new IllegalArgumentException("指定坐标超出迷宫的位置");
         }
 
-        if (data[row][col] == null) {
-            data[row][col] = new Point(this, row, col, 0);
+        if (start != null) {
+            hash ^= pointKey(start.row, start.column, START_SALT);
         }
-        start = data[row][col];
+        hash ^= pointKey(row, col, START_SALT);
+        start = view(row, col);
     }
 
     /**
@@ -262,16 +450,19 @@ public class Maze {
      *
      * @param row 终点行
      * @param col 终点列
+     * @throws IllegalStateException 迷宫已被冻结时抛出
      */
     public void setDestPoint(int row, int col) {
+        checkMutable();
         if (!validate(row, 0, height - 1) || !validate(col, 0, width - 1)) {
             throw new IllegalArgumentException("指定坐标超出迷宫的位置");
         }
 
-        if (data[row][col] == null) {
-            data[row][col] = new Point(this, row, col, 0);
+        if (dest != null) {
+            hash ^= pointKey(dest.row, dest.column, DEST_SALT);
         }
-        dest = data[row][col];
+        hash ^= pointKey(row, col, DEST_SALT);
+        dest = view(row, col);
     }
 
     /**
@@ -326,32 +517,189 @@ public class Maze {
      * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
      */
     public boolean canPass(Point p) {
-        if (!p.maze.equals(this)) {
+        if (p.maze != this) {
             throw new IllegalArgumentException("路径点不属于该迷宫");
         }
 
-        return p.getValue() != 1;
+        return isPassable(p.row, p.column);
+    }
+
+    /**
+     * 判断指定行列的路径点是否可通行（不检查越界，供求解器等内部热点路径使用）
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表该点是否可通行
+     */
+    boolean isPassable(int row, int col) {
+        return !cells.get(layout.index(row, col));
+    }
+
+    /**
+     * 判断布局中指定下标的路径点是否可通行（不检查越界，供求解器等内部热点路径使用）
+     *
+     * @param index 布局中的下标
+     * @return 一个布尔值，代表该点是否可通行
+     */
+    boolean isPassableAt(long index) {
+        return !cells.get(index);
     }
 
     /**
-     * 获得指定路径点四周的所有障碍物
+     * 获取位存储中指定下标的字（1为障碍物，对齐用的空位为0），供按字并行处理的求解器使用
+     *
+     * @param word 字下标
+     * @return 该字的值
+     */
+    long wallWord(long word) {
+        return cells.getWord(word);
+    }
+
+    /**
+     * 设置指定行列的路径点是否为障碍物（不创建路径点视图），供批量读入迷宫时使用
+     *
+     * @param row  指定行
+     * @param col  指定列
+     * @param wall 是否为障碍物
+     */
+    void setWall(int row, int col, boolean wall) {
+        checkMutable();
+        setCell(row, col, wall);
+    }
+
+    /**
+     * 获取该迷宫的存储布局
+     *
+     * @return 存储布局
+     */
+    public CellLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 获取该迷宫的拓扑
+     *
+     * @return 拓扑
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * 设置指定行列的路径点是否为障碍物，并增量维护哈希值与障碍物数量
+     *
+     * @param row  指定行
+     * @param col  指定列
+     * @param wall 是否为障碍物
+     */
+    private void setCell(int row, int col, boolean wall) {
+        long bit = layout.index(row, col);
+        if (cells.get(bit) != wall) {
+            cells.set(bit, wall);
+            hash ^= cellKey(row, col);
+            wallCount += wall ? 1 : -1;
+        }
+    }
+
+    /**
+     * 获取迷宫中障碍物的数量（增量维护，时间复杂度为O(1)）
+     *
+     * @return 障碍物的数量
+     */
+    long wallCount() {
+        return wallCount;
+    }
+
+    /**
+     * 设置指定行列的路径点的通行代价
+     * 第一次设置不为1的代价时才分配代价数组；代价为1的路径点不参与哈希值的计算，因此没有设置过代价的迷宫哈希值不变
+     *
+     * @param row  指定行
+     * @param col  指定列
+     * @param cost 通行代价（1~MAX_COST）
+     * @throws IllegalStateException 迷宫已被冻结时抛出
+     */
+    public void setCost(int row, int col, int cost) {
+        checkMutable();
+        if (!validate(row, 0, height - 1) || !validate(col, 0, width - 1)) {
+            throw new IllegalArgumentException("指定坐标超出迷宫的位置");
+        }
+        if (!validate(cost, 1, MAX_COST)) {
+            throw new IllegalArgumentException("通行代价只能为1~" + MAX_COST + "之间的整数");
+        }
+
+        int old = cost(row, col);
+        if (old == cost) {
+            return;
+        }
+        if (costs == null) {
+            if ((long) width * height > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("迷宫过大，无法设置通行代价");
+            }
+            costs = new byte[width * height];
+        }
+        //数组中保存代价减1，未设置的0即为默认代价1
+        costs[row * width + col] = (byte) (cost - 1);
+        if (old != 1) {
+            hash ^= costKey(row, col, old);
+            weightedCount--;
+        }
+        if (cost != 1) {
+            hash ^= costKey(row, col, cost);
+            weightedCount++;
+        }
+    }
+
+    /**
+     * 获取指定行列的路径点的通行代价（不检查越界，供求解器等内部热点路径使用）
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 通行代价（未设置时为1）
+     */
+    int cost(int row, int col) {
+        return costs == null ? 1 : (costs[row * width + col] & 0xff) + 1;
+    }
+
+    /**
+     * 获取按行存储的通行代价数组（保存代价减1），供求解器直接读取
+     *
+     * @return 代价数组（从未设置过代价时为null）
+     */
+    byte[] costPlane() {
+        return costs;
+    }
+
+    /**
+     * 判断迷宫中是否有通行代价不为1的路径点
+     *
+     * @return 一个布尔值，代表是否带有通行代价
+     */
+    public boolean hasCosts() {
+        return weightedCount > 0;
+    }
+
+    /**
+     * 获得按迷宫拓扑与指定路径点相邻的所有障碍物
      *
      * @param p 指定的路径点
-     * @return 一个列表，包含指定路径点四周所有被设置为障碍物的路径点
+     * @return 一个列表，包含与指定路径点相邻的所有被设置为障碍物的路径点
      * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
      */
     public List<Point> getWalls(Point p) {
-        if (!p.maze.equals(this)) {
+        if (p.maze != this) {
             throw new IllegalArgumentException("路径点不属于该迷宫");
         }
 
         List<Point> walls = new ArrayList<>();
-        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
-
-        for (int[] direction : directions) {
-            Point nextPoint = getUnit(p.row + direction[0], p.column + direction[1]);
-            if (nextPoint != null && !canPass(nextPoint)) {
-                walls.add(nextPoint);
+        int mask = topology.mask(p.row, p.column);
+        for (int k = 0; k < topology.degree(); k++) {
+            if ((mask & 1 << k) != 0) {
+                int r = p.row + topology.rowOffset(p.row, k);
+                int c = p.column + topology.colOffset(p.row, k);
+                if (!isPassable(r, c)) {
+                    walls.add(view(r, c));
+                }
             }
         }
 
@@ -366,10 +714,10 @@ public class Maze {
     public List<Point> getAllWalls() {
         List<Point> walls = new ArrayList<>();
 
-        for (Point[] points : data) {
-            for (Point point : points) {
-                if (!canPass(point)) {
-                    walls.add(point);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!isPassable(i, j)) {
+                    walls.add(view(i, j));
                 }
             }
         }
@@ -385,10 +733,10 @@ public class Maze {
     public List<Point> getAllWalls(int color) {
         List<Point> walls = new ArrayList<>();
 
-        for (Point[] points : data) {
-            for (Point point : points) {
-                if (!canPass(point) && point.color == color) {
-                    walls.add(point);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!isPassable(i, j) && view(i, j).color == color) {
+                    walls.add(view(i, j));
                 }
             }
         }
@@ -397,24 +745,26 @@ public class Maze {
     }
 
     /**
-     * 获得指定路径点四周的所有可通行路径点
+     * 获得按迷宫拓扑与指定路径点相邻的所有可通行路径点
      *
      * @param p 指定的路径点
-     * @return 一个列表，包含指定路径点四周所有被设置为可通行的路径点
+     * @return 一个列表，包含与指定路径点相邻的所有被设置为可通行的路径点
      * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
      */
     public List<Point> getPasses(Point p) {
-        if (!p.maze.equals(this)) {
+        if (p.maze != this) {
             throw new IllegalArgumentException("路径点不属于该迷宫");
         }
 
         List<Point> walls = new ArrayList<>();
-        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
-
-        for (int[] direction : directions) {
-            Point nextPoint = getUnit(p.row + direction[0], p.column + direction[1]);
-            if (nextPoint != null && canPass(nextPoint)) {
-                walls.add(nextPoint);
+        int mask = topology.mask(p.row, p.column);
+        for (int k = 0; k < topology.degree(); k++) {
+            if ((mask & 1 << k) != 0) {
+                int r = p.row + topology.rowOffset(p.row, k);
+                int c = p.column + topology.colOffset(p.row, k);
+                if (isPassable(r, c)) {
+                    walls.add(view(r, c));
+                }
             }
         }
 
@@ -429,10 +779,10 @@ public class Maze {
     public List<Point> getAllPasses() {
         List<Point> walls = new ArrayList<>();
 
-        for (Point[] points : data) {
-            for (Point point : points) {
-                if (canPass(point)) {
-                    walls.add(point);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (isPassable(i, j)) {
+                    walls.add(view(i, j));
                 }
             }
         }
@@ -448,10 +798,10 @@ public class Maze {
     public List<Point> getAllPasses(int color) {
         List<Point> walls = new ArrayList<>();
 
-        for (Point[] points : data) {
-            for (Point point : points) {
-                if (canPass(point) && point.color == color) {
-                    walls.add(point);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (isPassable(i, j) && view(i, j).color == color) {
+                    walls.add(view(i, j));
                 }
             }
         }
@@ -465,31 +815,182 @@ public class Maze {
      * @return 一个浮点数，代表该迷宫的障碍密度
      */
     public double countAlpha() {
-        return getAllWalls().size() * 100.0 / width / height;
+        return wallCount * 100.0 / width / height;
     }
 
     /**
      * 判断指定的路径点是否为死路（即无法继续通行）
+     * 直接清点相邻的可通行路径点，数到两个即返回，不构造相邻路径点的列表
      *
      * @param p 指定的路径点
      * @return 一个布尔值，代表是否为死路
      * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
      */
     public boolean isDeadEnd(Point p) {
-        if (!p.maze.equals(this)) {
+        if (p.maze != this) {
             throw new IllegalArgumentException("路径点不属于该迷宫");
         }
 
-        return getPasses(p).size() <= 1;
+        int passes = 0;
+        int mask = topology.mask(p.row, p.column);
+        for (int k = 0; k < topology.degree(); k++) {
+            if ((mask & 1 << k) != 0
+                    && isPassable(p.row + topology.rowOffset(p.row, k), p.column + topology.colOffset(p.row, k))
+                    && ++passes > 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取该迷宫内容的64位Zobrist哈希值
+     * 哈希值由迷宫宽高、拓扑、起点、终点、所有障碍物以及不为1的通行代价决定，路径点颜色不参与计算；
+     * 该值在修改路径点、起点和终点时增量维护，获取的时间复杂度为O(1)
+     *
+     * @return 该迷宫内容的哈希值
+     */
+    public long contentHash() {
+        return hash;
+    }
+
+    /**
+     * 获取不包含起点的内容哈希值，供只依赖路径点与终点的结果判断是否过期
+     *
+     * @return 不包含起点的哈希值
+     */
+    long contentHashWithoutStart() {
+        return hash ^ pointKey(start.row, start.column, START_SALT);
+    }
+
+    /**
+     * 求指定位置障碍物的Zobrist键
+     * 键由位置直接散列得到，不需要为每个迷宫保存随机数表，因此同样宽高的迷宫之间的哈希值可以比较
+     *
+     * @param row 行位置
+     * @param col 列位置
+     * @return 该位置的键
+     */
+    static long cellKey(int row, int col) {
+        return pointKey(row, col, CELL_SALT);
+    }
+
+    /**
+     * 求指定位置在指定通行代价下的Zobrist键
+     *
+     * @param row  行位置
+     * @param col  列位置
+     * @param cost 通行代价
+     * @return 该位置与代价的键
+     */
+    private static long costKey(int row, int col, int cost) {
+        return mix(pointKey(row, col, COST_SALT) + cost);
+    }
+
+    /**
+     * 求指定位置在指定用途下的Zobrist键
+     *
+     * @param row  行位置
+     * @param col  列位置
+     * @param salt 用途对应的盐值
+     * @return 该位置的键
+     */
+    private static long pointKey(int row, int col, long salt) {
+        return mix(((long) row << 32 | col) ^ salt);
+    }
+
+    /**
+     * 求拓扑类型对应的Zobrist键，四连通为0，因此原有迷宫的哈希值不变
+     *
+     * @param type 拓扑类型
+     * @return 拓扑对应的键
+     */
+    private static long topologyKey(Topology.Type type) {
+        return type == Topology.Type.FOUR ? 0 : pointKey(type.ordinal(), 0, TOPOLOGY_SALT);
+    }
+
+    /**
+     * 求迷宫宽高对应的Zobrist键
+     *
+     * @param width  迷宫宽度
+     * @param height 迷宫高度
+     * @return 宽高对应的键
+     */
+    private static long sizeKey(int width, int height) {
+        return pointKey(height, width, SIZE_SALT);
+    }
+
+    /**
+     * SplitMix64的混合函数，将输入均匀地散列到64位
+     *
+     * @param z 输入值
+     * @return 散列后的值
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 比较两个迷宫的内容是否相同（宽高、拓扑、起点、终点、所有路径点的值与通行代价）
+     * 先比较哈希值，哈希值不同时立即返回，只有哈希值相同时才逐字比较位存储（共享的块直接跳过）
+     * 结果随内容的修改而变化，作为散列表的键时应使用冻结的快照
+     *
+     * @param o 另一个对象
+     * @return 一个布尔值，代表两个迷宫的内容是否相同
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Maze)) {
+            return false;
+        }
+
+        Maze m = (Maze) o;
+        if (hash != m.hash || width != m.width || height != m.height
+                || !isStartPoint(m.start.row, m.start.column) || !isDestPoint(m.dest.row, m.dest.column)
+                || topology.type != m.topology.type || weightedCount != m.weightedCount) {
+            return false;
+        }
+        if (weightedCount > 0 && !Arrays.equals(costs, m.costs)) {
+            return false;
+        }
+
+        if (layout.getType() == m.layout.getType()) {
+            return cells.contentEquals(m.cells);
+        }
+
+        //布局不同时只能逐个路径点比较
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (isPassable(i, j) != m.isPassable(i, j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 求迷宫内容的哈希值，与equals()一致，修改迷宫后会改变
+     *
+     * @return 内容哈希值的低32位与高32位的异或
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
     }
 
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
         String[] x = {"0", "1"};
-        for (Point[] datum : data) {
-            for (int j = 0; j < data[0].length; j++) {
-                s.append(x[datum[j].value]).append(" ");
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                s.append(x[isPassable(i, j) ? 0 : 1]).append(" ");
             }
             s.append("\n");
         }
@@ -499,11 +1000,136 @@ public class Maze {
 
     /**
      * 获取当前迷宫的一个拷贝
+     * 拷贝是写时复制的，时间复杂度为O(块数)；路径点的颜色不会被拷贝
      *
      * @return 当前迷宫的一个拷贝
+     * @throws UnsupportedOperationException 迷宫为按需加载时抛出
      */
     public Maze getCopy() {
-        return new Maze(this);
+        return new Maze(this, false);
+    }
+
+    /**
+     * 打开一个从分块存储中按需加载的迷宫
+     * 路径点所在的块在第一次被访问时才读入，常驻内存的块超过预算时换出近期未被访问的块（时钟算法，近似LRU），修改过的块换出时写回；
+     * 按需加载的迷宫不支持getCopy()与freeze()，也不是线程安全的（读取也会换入换出块）；
+     * 路径点对象不被缓存，因此设置的颜色不会保留，求解时的工作区按访问到的区域分页分配
+     *
+     * @param store        分块存储
+     * @param width        迷宫的宽度
+     * @param height       迷宫的高度
+     * @param startRow     起点所在行
+     * @param startCol     起点所在列
+     * @param destRow      终点所在行
+     * @param destCol      终点所在列
+     * @param budgetBytes  常驻内存的块的总字节数上限（每块8KB，至少常驻一块）
+     * @return 打开的迷宫
+     */
+    public static Maze open(TileStore store, int width, int height, int startRow, int startCol, int destRow, int destCol,
+                            long budgetBytes) {
+        int budget = (int) Math.min(Integer.MAX_VALUE, budgetBytes / (CellStore.CHUNK_WORDS * 8));
+        return new Maze(store, budget, width, height, startRow, startCol, destRow, destCol);
+    }
+
+    /**
+     * 把修改过的常驻块写回分块存储（不是按需加载的迷宫什么也不做）
+     */
+    public void flush() {
+        cells.flush();
+    }
+
+    /**
+     * 判断迷宫是否按需从分块存储加载（这样的迷宫读取时也会修改内部状态，不能被多个线程同时读取）
+     *
+     * @return 一个布尔值，代表是否按需加载
+     */
+    boolean isLazy() {
+        return cells.isBacked();
+    }
+
+    /**
+     * 获取当前迷宫使用指定存储布局的拷贝
+     * 布局相同时与getCopy()相同，否则需要逐个路径点复制，时间复杂度为O(路径点数)
+     *
+     * @param type 存储布局类型
+     * @return 使用指定布局的拷贝
+     */
+    public Maze withLayout(CellLayout.Type type) {
+        if (type == layout.getType()) {
+            return getCopy();
+        }
+
+        return convert(type, topology.type);
+    }
+
+    /**
+     * 获取当前迷宫使用指定拓扑的拷贝，路径点、起点、终点与通行代价都不变
+     * 拓扑相同时与getCopy()相同，否则需要逐个路径点复制，时间复杂度为O(路径点数)
+     *
+     * @param type 拓扑类型
+     * @return 使用指定拓扑的拷贝
+     */
+    public Maze withTopology(Topology.Type type) {
+        if (type == topology.type) {
+            return getCopy();
+        }
+        return convert(layout.getType(), type);
+    }
+
+    /**
+     * 逐个路径点复制出使用指定布局与拓扑的拷贝
+     *
+     * @param layoutType   存储布局类型
+     * @param topologyType 拓扑类型
+     * @return 拷贝
+     */
+    private Maze convert(CellLayout.Type layoutType, Topology.Type topologyType) {
+        Maze copy = new Maze(width, height, start.row, start.column, dest.row, dest.column, layoutType, topologyType);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!isPassable(i, j)) {
+                    copy.setCell(i, j, true);
+                }
+            }
+        }
+        if (costs != null) {
+            copy.costs = costs.clone();
+            copy.weightedCount = weightedCount;
+            copy.hash = hash ^ topologyKey(topology.type) ^ topologyKey(topologyType);
+        }
+        return copy;
+    }
+
+    /**
+     * 获取当前迷宫的一个冻结快照
+     * 快照的路径点、起点和终点均不可修改，因此可以不加锁地被多个线程同时求解；
+     * 对已冻结的迷宫调用时直接返回自身
+     *
+     * @return 当前迷宫的冻结快照
+     * @throws UnsupportedOperationException 迷宫为按需加载时抛出
+     */
+    public Maze freeze() {
+        return frozen ? this : new Maze(this, true);
+    }
+
+    /**
+     * 判断该迷宫是否为冻结的快照
+     *
+     * @return 一个布尔值，代表该迷宫是否已冻结
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * 检查迷宫是否允许修改
+     *
+     * @throws IllegalStateException 迷宫已被冻结时抛出
+     */
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("迷宫已冻结，不能修改");
+        }
     }
 
     /**
@@ -0,0 +1,507 @@
+package com.maze.ws;
+
+import java.util.Arrays;
+
+/**
+ * 多层迷宫类
+ * 迷宫由depth层宽width、高height的平面叠成，同一层内上下左右相邻的路径点互通，
+ * 相邻两层之间只能通过楼梯通行：下层路径点带有楼梯且上下两点都可通行时，两点互通
+ * 所有路径点按 (层 * 高度 + 行) * 宽度 + 列 的下标压缩存放在一个位数组中（1为障碍物），楼梯同样存放在一个位数组中，
+ * 相邻路径点只需加减步长（1、宽度、宽度 * 高度），1000*1000*64的迷宫只占约16MB
+ * 路径点以下标表示，不创建路径点对象
+ *
+ * @author Wshine
+ */
+public class Maze3D {
+    /**
+     * 最多的层数
+     */
+    public static final int MAX_DEPTH = 4096;
+    /**
+     * 每个路径点最多的相邻方向数，方向依次为下、右、上、左、上一层、下一层
+     */
+    public static final int DEGREE = 6;
+
+    public final int width;
+    public final int height;
+    public final int depth;
+    private final int layer;
+    private final long[] walls;
+    private final long[] stairs;
+    private long wallCount;
+    private int start;
+    private int dest;
+
+    /**
+     * 构造方法，构造一个空迷宫（所有路径点均可通行，没有楼梯）
+     *
+     * @param width      迷宫的宽度
+     * @param height     迷宫的高度
+     * @param depth      迷宫的层数
+     * @param startLevel 起点所在层
+     * @param startRow   起点所在行
+     * @param startCol   起点所在列
+     * @param destLevel  终点所在层
+     * @param destRow    终点所在行
+     * @param destCol    终点所在列
+     * @throws IllegalArgumentException 大小或坐标超出范围时抛出
+     */
+    public Maze3D(int width, int height, int depth, int startLevel, int startRow, int startCol,
+                  int destLevel, int destRow, int destCol) {
+        if (!validate(width, 1, Maze.MAX_SIZE) || !validate(height, 1, Maze.MAX_SIZE) || !validate(depth, 1, MAX_DEPTH)) {
+            throw new IllegalArgumentException("迷宫大小超限，宽度和高度只能为1~50000之间的整数，层数只能为1~" + MAX_DEPTH + "之间的整数");
+        }
+        if ((long) width * height * depth > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("迷宫过大，无法在内存中存放");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.layer = width * height;
+        int words = (layer * depth + 63) >>> 6;
+        this.walls = new long[words];
+        this.stairs = new long[words];
+        setStartPoint(startLevel, startRow, startCol);
+        setDestPoint(destLevel, destRow, destCol);
+    }
+
+    /**
+     * 给拷贝用的构造方法
+     *
+     * @param maze 用于拷贝的迷宫对象
+     */
+    private Maze3D(Maze3D maze) {
+        this.width = maze.width;
+        this.height = maze.height;
+        this.depth = maze.depth;
+        this.layer = maze.layer;
+        this.walls = maze.walls.clone();
+        this.stairs = maze.stairs.clone();
+        this.wallCount = maze.wallCount;
+        this.start = maze.start;
+        this.dest = maze.dest;
+    }
+
+    /**
+     * 判断一个整数是否在指定的闭区间内
+     *
+     * @param num  待判断的数
+     * @param down 下界
+     * @param up   上界
+     * @return 判断结果
+     */
+    private static boolean validate(int num, int down, int up) {
+        return num >= down && num <= up;
+    }
+
+    /**
+     * 检查坐标是否在迷宫内
+     *
+     * @param level 层
+     * @param row   行
+     * @param col   列
+     * @throws IllegalArgumentException 坐标超出迷宫时抛出
+     */
+    private void checkBounds(int level, int row, int col) {
+        if (!validate(level, 0, depth - 1) || !validate(row, 0, height - 1) || !validate(col, 0, width - 1)) {
+            throw new IllegalArgumentException("指定坐标超出迷宫的位置");
+        }
+    }
+
+    /**
+     * 求指定位置的下标
+     *
+     * @param level 层
+     * @param row   行
+     * @param col   列
+     * @return 下标（(层 * 高度 + 行) * 宽度 + 列）
+     */
+    public int index(int level, int row, int col) {
+        return level * layer + row * width + col;
+    }
+
+    /**
+     * 求下标所在的层
+     *
+     * @param index 下标
+     * @return 所在层
+     */
+    public int level(int index) {
+        return index / layer;
+    }
+
+    /**
+     * 求下标所在的行
+     *
+     * @param index 下标
+     * @return 所在行
+     */
+    public int row(int index) {
+        return index % layer / width;
+    }
+
+    /**
+     * 求下标所在的列
+     *
+     * @param index 下标
+     * @return 所在列
+     */
+    public int col(int index) {
+        return index % width;
+    }
+
+    /**
+     * 获取路径点总数
+     *
+     * @return 宽度 * 高度 * 层数
+     */
+    public int size() {
+        return layer * depth;
+    }
+
+    /**
+     * 判断指定位置是否可通行
+     *
+     * @param level 层
+     * @param row   行
+     * @param col   列
+     * @return 一个布尔值，代表是否可通行
+     */
+    public boolean isPassable(int level, int row, int col) {
+        checkBounds(level, row, col);
+        return isPassableAt(index(level, row, col));
+    }
+
+    /**
+     * 判断指定下标的路径点是否可通行（不检查越界，供求解器等内部热点路径使用）
+     *
+     * @param index 下标
+     * @return 一个布尔值，代表是否可通行
+     */
+    boolean isPassableAt(int index) {
+        return (walls[index >>> 6] & 1L << index) == 0;
+    }
+
+    /**
+     * 设置指定位置是否为障碍物
+     * 设置为障碍物时，该点通往上下两层的楼梯一并移除
+     *
+     * @param level 层
+     * @param row   行
+     * @param col   列
+     * @param wall  是否为障碍物
+     * @throws IllegalArgumentException 坐标超出迷宫时抛出
+     */
+    public void setWall(int level, int row, int col, boolean wall) {
+        checkBounds(level, row, col);
+        setWallAt(index(level, row, col), wall);
+    }
+
+    /**
+     * 设置指定下标的路径点是否为障碍物，并维护障碍物数量与楼梯（不检查越界）
+     *
+     * @param index 下标
+     * @param wall  是否为障碍物
+     */
+    void setWallAt(int index, boolean wall) {
+        long bit = 1L << index;
+        boolean old = (walls[index >>> 6] & bit) != 0;
+        if (old == wall) {
+            return;
+        }
+        if (wall) {
+            walls[index >>> 6] |= bit;
+            wallCount++;
+            stairs[index >>> 6] &= ~bit;
+            if (index >= layer) {
+                int below = index - layer;
+                stairs[below >>> 6] &= ~(1L << below);
+            }
+        } else {
+            walls[index >>> 6] &= ~bit;
+            wallCount--;
+        }
+    }
+
+    /**
+     * 把所有路径点设置为障碍物（同时移除所有楼梯）
+     */
+    void fillWalls() {
+        int cells = size();
+        Arrays.fill(walls, -1L);
+        if ((cells & 63) != 0) {
+            walls[walls.length - 1] = (1L << cells) - 1;
+        }
+        Arrays.fill(stairs, 0);
+        wallCount = cells;
+    }
+
+    /**
+     * 判断指定位置是否有通往上一层的楼梯
+     *
+     * @param level 层
+     * @param row   行
+     * @param col   列
+     * @return 一个布尔值，代表是否有楼梯
+     */
+    public boolean hasStair(int level, int row, int col) {
+        checkBounds(level, row, col);
+        return hasStairAt(index(level, row, col));
+    }
+
+    /**
+     * 判断指定下标的路径点是否有通往上一层的楼梯（不检查越界）
+     *
+     * @param index 下标
+     * @return 一个布尔值，代表是否有楼梯
+     */
+    boolean hasStairAt(int index) {
+        return (stairs[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * 设置指定位置是否有通往上一层的楼梯
+     *
+     * @param level 层（不能是最上层）
+     * @param row   行
+     * @param col   列
+     * @param stair 是否有楼梯
+     * @throws IllegalArgumentException 坐标超出迷宫或位于最上层时抛出
+     */
+    public void setStair(int level, int row, int col, boolean stair) {
+        checkBounds(level, row, col);
+        if (level == depth - 1) {
+            throw new IllegalArgumentException("最上层不能设置楼梯");
+        }
+        setStairAt(index(level, row, col), stair);
+    }
+
+    /**
+     * 设置指定下标的路径点是否有通往上一层的楼梯（不检查越界）
+     *
+     * @param index 下标
+     * @param stair 是否有楼梯
+     */
+    void setStairAt(int index, boolean stair) {
+        if (stair) {
+            stairs[index >>> 6] |= 1L << index;
+        } else {
+            stairs[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * 求路径点在指定方向上可以直接到达的相邻路径点
+     *
+     * @param index 下标
+     * @param k     方向（0~5依次为下、右、上、左、上一层、下一层）
+     * @return 相邻路径点的下标（超出迷宫、没有楼梯或相邻点为障碍物时为-1）
+     */
+    public int neighbour(int index, int k) {
+        int next;
+        switch (k) {
+            case 0:
+                next = index % layer + width < layer ? index + width : -1;
+                break;
+            case 1:
+                next = index % width < width - 1 ? index + 1 : -1;
+                break;
+            case 2:
+                next = index % layer >= width ? index - width : -1;
+                break;
+            case 3:
+                next = index % width > 0 ? index - 1 : -1;
+                break;
+            case 4:
+                next = index + layer < size() && hasStairAt(index) ? index + layer : -1;
+                break;
+            default:
+                next = index >= layer && hasStairAt(index - layer) ? index - layer : -1;
+                break;
+        }
+        return next >= 0 && isPassableAt(next) ? next : -1;
+    }
+
+    /**
+     * 判断指定下标的路径点是否为死路（即可以直接到达的相邻路径点不超过一个）
+     *
+     * @param index 下标
+     * @return 一个布尔值，代表是否为死路
+     */
+    public boolean isDeadEnd(int index) {
+        int passes = 0;
+        for (int k = 0; k < DEGREE && passes < 2; k++) {
+            if (neighbour(index, k) >= 0) {
+                passes++;
+            }
+        }
+        return passes <= 1;
+    }
+
+    /**
+     * 获取起点的下标
+     *
+     * @return 起点下标
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * 设置起点
+     *
+     * @param level 起点所在层
+     * @param row   起点所在行
+     * @param col   起点所在列
+     * @throws IllegalArgumentException 坐标超出迷宫时抛出
+     */
+    public void setStartPoint(int level, int row, int col) {
+        checkBounds(level, row, col);
+        start = index(level, row, col);
+    }
+
+    /**
+     * 获取终点的下标
+     *
+     * @return 终点下标
+     */
+    public int getDest() {
+        return dest;
+    }
+
+    /**
+     * 设置终点
+     *
+     * @param level 终点所在层
+     * @param row   终点所在行
+     * @param col   终点所在列
+     * @throws IllegalArgumentException 坐标超出迷宫时抛出
+     */
+    public void setDestPoint(int level, int row, int col) {
+        checkBounds(level, row, col);
+        dest = index(level, row, col);
+    }
+
+    /**
+     * 获取迷宫中障碍物的数量（增量维护，时间复杂度为O(1)）
+     *
+     * @return 障碍物的数量
+     */
+    public long wallCount() {
+        return wallCount;
+    }
+
+    /**
+     * 计算该迷宫的障碍密度
+     *
+     * @return 一个浮点数，代表该迷宫的障碍密度
+     */
+    public double countAlpha() {
+        return wallCount * 100.0 / size();
+    }
+
+    /**
+     * 获取障碍物位数组中的一个字，供文件输出使用
+     *
+     * @param word 字下标
+     * @return 该字的值
+     */
+    long wallWord(int word) {
+        return walls[word];
+    }
+
+    /**
+     * 获取楼梯位数组中的一个字，供文件输出使用
+     *
+     * @param word 字下标
+     * @return 该字的值
+     */
+    long stairWord(int word) {
+        return stairs[word];
+    }
+
+    /**
+     * 整字写入障碍物与楼梯，供文件读入使用
+     * 超出迷宫的位与障碍物上的楼梯被忽略
+     *
+     * @param word  字下标
+     * @param wall  障碍物位
+     * @param stair 楼梯位
+     */
+    void loadWord(int word, long wall, long stair) {
+        int rest = size() - (word << 6);
+        if (rest < 64) {
+            wall &= (1L << rest) - 1;
+        }
+        wallCount += Long.bitCount(wall) - Long.bitCount(walls[word]);
+        walls[word] = wall;
+        stairs[word] = stair & ~wall & (rest < 64 ? (1L << rest) - 1 : -1L);
+    }
+
+    /**
+     * 获取位数组的字数
+     *
+     * @return 字数
+     */
+    int words() {
+        return walls.length;
+    }
+
+    /**
+     * 获取当前迷宫的一个拷贝
+     *
+     * @return 当前迷宫的一个拷贝
+     */
+    public Maze3D getCopy() {
+        return new Maze3D(this);
+    }
+
+    /**
+     * 比较两个迷宫的内容是否相同（大小、起点、终点、所有路径点与楼梯）
+     *
+     * @param o 另一个对象
+     * @return 一个布尔值，代表两个迷宫的内容是否相同
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Maze3D)) {
+            return false;
+        }
+
+        Maze3D m = (Maze3D) o;
+        return width == m.width && height == m.height && depth == m.depth && start == m.start && dest == m.dest
+                && wallCount == m.wallCount && Arrays.equals(walls, m.walls) && Arrays.equals(stairs, m.stairs);
+    }
+
+    @Override
+    public int hashCode() {
+        return (Arrays.hashCode(walls) * 31 + Arrays.hashCode(stairs)) * 31 + start * 17 + dest;
+    }
+
+    /**
+     * 按层输出迷宫，每层之间空一行；0为可通行，1为障碍物，2为带有通往上一层楼梯的可通行路径点
+     *
+     * @return 迷宫的字符串形式
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (int l = 0; l < depth; l++) {
+            if (l > 0) {
+                s.append("\n");
+            }
+            for (int i = 0; i < height; i++) {
+                for (int j = 0; j < width; j++) {
+                    int index = index(l, i, j);
+                    s.append(!isPassableAt(index) ? "1" : hasStairAt(index) ? "2" : "0").append(" ");
+                }
+                s.append("\n");
+            }
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,274 @@
+package com.maze.ws;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * 多层迷宫生成类
+ * 先把所有路径点设为障碍物，从起点开始用生长树算法挖掘：每次随机取出一个已挖开的路径点，
+ * 在相邻的障碍物中挑选挖开后只与它相通的一个挖开，向上下层挖掘时在下层的路径点放置楼梯，
+ * 楼梯只以较低的概率被选中，使每层内部的通道较长；所有路径点都只通过生长树相连，得到一个无环的迷宫
+ * 之后打通终点，再填充死路的末端或打开与通道相邻的障碍物，使障碍物个数与指定的密度一致，整个过程都不会破坏连通性
+ * 生成过程只使用迷宫本身的位数组与一个下标队列，1000*1000*64的迷宫也能在内存中生成
+ *
+ * @author Wshine
+ */
+public class Maze3DGenerator {
+    /**
+     * 向上下层挖掘的候选被选中的概率的倒数
+     */
+    private static final int STAIR_ODDS = 8;
+
+    public final int width;
+    public final int height;
+    public final int depth;
+    public final int alpha;
+    private final int startLevel;
+    private final int startRow;
+    private final int startCol;
+    private final int destLevel;
+    private final int destRow;
+    private final int destCol;
+    private final Random rand;
+
+    private Maze3D maze;
+    private int layer;
+
+    /**
+     * 构造方法
+     *
+     * @param width      迷宫的宽度
+     * @param height     迷宫的高度
+     * @param depth      迷宫的层数
+     * @param alpha      障碍密度（百分比）
+     * @param startLevel 起点所在层
+     * @param startRow   起点所在行
+     * @param startCol   起点所在列
+     * @param destLevel  终点所在层
+     * @param destRow    终点所在行
+     * @param destCol    终点所在列
+     * @throws IllegalArgumentException 参数不合法时抛出
+     */
+    public Maze3DGenerator(int width, int height, int depth, int alpha, int startLevel, int startRow, int startCol,
+                           int destLevel, int destRow, int destCol) {
+        this(width, height, depth, alpha, startLevel, startRow, startCol, destLevel, destRow, destCol, new Random());
+    }
+
+    /**
+     * 构造方法，相同的参数与种子总是生成相同的迷宫
+     *
+     * @param seed 随机种子
+     * @throws IllegalArgumentException 参数不合法时抛出
+     */
+    public Maze3DGenerator(int width, int height, int depth, int alpha, int startLevel, int startRow, int startCol,
+                           int destLevel, int destRow, int destCol, long seed) {
+        this(width, height, depth, alpha, startLevel, startRow, startCol, destLevel, destRow, destCol, new Random(seed));
+    }
+
+    /**
+     * 构造方法，使用指定的随机数生成器
+     *
+     * @param rand 随机数生成器
+     */
+    private Maze3DGenerator(int width, int height, int depth, int alpha, int startLevel, int startRow, int startCol,
+                            int destLevel, int destRow, int destCol, Random rand) {
+        //构造一次迷宫以检查大小、起点与终点是否合法
+        new Maze3D(width, height, depth, startLevel, startRow, startCol, destLevel, destRow, destCol);
+        long cells = (long) width * height * depth;
+        long passing = cells - (long) (cells * alpha / 100.0 + 0.5);
+        long distance = Math.abs(startLevel - destLevel) + Math.abs(startRow - destRow) + Math.abs(startCol - destCol) + 1;
+        if (passing < distance) {
+            throw new IllegalArgumentException("障碍物密度过高，生成迷宫无解。");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.alpha = alpha;
+        this.startLevel = startLevel;
+        this.startRow = startRow;
+        this.startCol = startCol;
+        this.destLevel = destLevel;
+        this.destRow = destRow;
+        this.destCol = destCol;
+        this.rand = rand;
+    }
+
+    /**
+     * 生成一个多层迷宫
+     *
+     * @return 生成的迷宫，起点与终点连通
+     */
+    public Maze3D generate() {
+        maze = new Maze3D(width, height, depth, startLevel, startRow, startCol, destLevel, destRow, destCol);
+        layer = width * height;
+        maze.fillWalls();
+
+        grow();
+        connect(maze.getDest());
+        adjustDensity();
+
+        Maze3D result = maze;
+        maze = null;
+        return result;
+    }
+
+    /**
+     * 从起点开始用生长树算法挖掘，直到没有可以挖开的障碍物
+     * 已挖开的路径点存放在下标数组中，没有候选时用末尾的元素覆盖后移除
+     */
+    private void grow() {
+        int[] frontier = new int[1024];
+        int size = 1;
+        frontier[0] = maze.getStart();
+        maze.setWallAt(maze.getStart(), false);
+        int[] candidates = new int[Maze3D.DEGREE];
+        while (size > 0) {
+            int i = rand.nextInt(size);
+            int v = frontier[i];
+            int count = 0;
+            boolean pending = false;
+            for (int k = 0; k < Maze3D.DEGREE; k++) {
+                int w = adjacent(v, k);
+                if (w < 0 || maze.isPassableAt(w)) {
+                    continue;
+                }
+                int passes = horizontalPasses(w);
+                if (k < 4 && passes == 1) {
+                    candidates[count++] = k;
+                } else if (k >= 4 && passes == 0) {
+                    //上下层的候选暂时未被选中时保留该路径点，之后还有机会
+                    if (rand.nextInt(STAIR_ODDS) == 0) {
+                        candidates[count++] = k;
+                    } else {
+                        pending = true;
+                    }
+                }
+            }
+
+            if (count == 0) {
+                if (!pending) {
+                    frontier[i] = frontier[--size];
+                }
+                continue;
+            }
+            int k = candidates[rand.nextInt(count)];
+            int w = adjacent(v, k);
+            maze.setWallAt(w, false);
+            if (k == 4) {
+                maze.setStairAt(v, true);
+            } else if (k == 5) {
+                maze.setStairAt(w, true);
+            }
+            if (size == frontier.length) {
+                frontier = Arrays.copyOf(frontier, size * 2);
+            }
+            frontier[size++] = w;
+        }
+    }
+
+    /**
+     * 打通指定的路径点，若它在所在层没有可通行的相邻路径点，则在该层内沿最短的路线挖掘到最近的可通行路径点
+     * 生长树会到达每一层，因此每层都有可通行的路径点
+     *
+     * @param index 路径点下标
+     */
+    private void connect(int index) {
+        if (maze.isPassableAt(index)) {
+            return;
+        }
+        maze.setWallAt(index, false);
+        if (horizontalPasses(index) > 0) {
+            return;
+        }
+
+        Map<Integer, Integer> from = new HashMap<>();
+        Queue<Integer> queue = new LinkedList<>();
+        from.put(index, -1);
+        queue.add(index);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (cell != index && maze.isPassableAt(cell)) {
+                //找到最近的可通行路径点，沿来路挖掘
+                for (int p = from.get(cell); p != index; p = from.get(p)) {
+                    maze.setWallAt(p, false);
+                }
+                return;
+            }
+            for (int k = 0; k < 4; k++) {
+                int next = adjacent(cell, k);
+                if (next >= 0 && !from.containsKey(next)) {
+                    from.put(next, cell);
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在不破坏连通性的前提下增删障碍物，使障碍物个数与指定的密度一致
+     * 随机抽取路径点：障碍物过少时填充死路的末端（不会切断其它路径点），
+     * 过多时打开同层内与通道相邻的障碍物；抽取次数过多仍无法满足时放弃
+     */
+    private void adjustDensity() {
+        int cells = maze.size();
+        long target = (long) ((long) cells * alpha / 100.0 + 0.5);
+        long attempts = 16L * cells;
+        while (maze.wallCount() != target && attempts-- > 0) {
+            int index = rand.nextInt(cells);
+            if (maze.wallCount() < target) {
+                if (maze.isPassableAt(index) && index != maze.getStart() && index != maze.getDest()
+                        && maze.isDeadEnd(index)) {
+                    maze.setWallAt(index, true);
+                }
+            } else if (!maze.isPassableAt(index) && horizontalPasses(index) > 0) {
+                maze.setWallAt(index, false);
+            }
+        }
+    }
+
+    /**
+     * 求路径点在同一层内可通行的相邻路径点个数
+     *
+     * @param index 路径点下标
+     * @return 可通行的相邻路径点个数
+     */
+    private int horizontalPasses(int index) {
+        int passes = 0;
+        for (int k = 0; k < 4; k++) {
+            int w = adjacent(index, k);
+            if (w >= 0 && maze.isPassableAt(w)) {
+                passes++;
+            }
+        }
+        return passes;
+    }
+
+    /**
+     * 求路径点在指定方向上相邻的路径点，不考虑障碍物与楼梯
+     *
+     * @param index 路径点下标
+     * @param k     方向（0~5依次为下、右、上、左、上一层、下一层）
+     * @return 相邻路径点的下标（超出迷宫时为-1）
+     */
+    private int adjacent(int index, int k) {
+        switch (k) {
+            case 0:
+                return index % layer + width < layer ? index + width : -1;
+            case 1:
+                return index % width < width - 1 ? index + 1 : -1;
+            case 2:
+                return index % layer >= width ? index - width : -1;
+            case 3:
+                return index % width > 0 ? index - 1 : -1;
+            case 4:
+                return index + layer < maze.size() ? index + layer : -1;
+            default:
+                return index >= layer ? index - layer : -1;
+        }
+    }
+}
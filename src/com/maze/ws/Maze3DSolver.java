@@ -0,0 +1,297 @@
+package com.maze.ws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 多层迷宫求解类
+ * 逐层BFS，每个路径点只用2位记录步数模3的结果（0为未访问），相邻路径点的步数最多相差1，
+ * 因此回溯时仍能唯一地找出前驱；统计路径条数时只为当前层与下一层保存条数，
+ * 1000*1000*64的迷宫标记只占16MB，队列只与BFS最宽的一层成正比
+ * 步数的含义与MazeSolver相同（起点为1），路径以下标数组表示
+ * 求解器对象本身不是线程安全的
+ *
+ * @author Wshine
+ */
+public class Maze3DSolver {
+    private Maze3D maze;
+    private long[] marks = new long[0];
+    private int[] current = new int[16];
+    private long[] currentWays = new long[16];
+    private int[] next = new int[16];
+    private long[] nextWays = new long[16];
+    private int nextSize;
+    private int[] slotKeys = new int[32];
+    private int[] slotValues = new int[32];
+    private long destWays;
+
+    public Maze3DSolver(Maze3D maze) {
+        this.maze = maze;
+        Arrays.fill(slotKeys, -1);
+    }
+
+    /**
+     * 切换待解决的迷宫
+     *
+     * @param maze 切换的迷宫
+     */
+    public void changeMaze(Maze3D maze) {
+        this.maze = maze;
+    }
+
+    /**
+     * 求目前迷宫的最短路径长度
+     *
+     * @return 最短路径长度（-1则迷宫无解）
+     */
+    public int countStep() {
+        return search(false);
+    }
+
+    /**
+     * 求目前迷宫的最短路径条数
+     *
+     * @return 最短路径的条数（无解为0，超出long的范围时为Long.MAX_VALUE）
+     */
+    public long countPaths() {
+        return search(true) == -1 ? 0 : destWays;
+    }
+
+    /**
+     * 求出最多指定条数的最短路径
+     *
+     * @param maxPaths 最多求出的路径条数
+     * @return 最短路径的列表，每条路径为从起点到终点的下标数组（迷宫无解时为空列表）
+     * @throws IllegalArgumentException 条数不是正整数时抛出
+     */
+    public List<int[]> solve(int maxPaths) {
+        if (maxPaths < 1) {
+            throw new IllegalArgumentException("路径条数必须为正整数");
+        }
+        List<int[]> routes = new ArrayList<>();
+        int step = search(false);
+        if (step == -1) {
+            return routes;
+        }
+
+        //从终点沿步数递减的前驱深度优先回溯，每个已访问的路径点都能回到起点，因此不会走进死路
+        int[] path = new int[step];
+        int[] direction = new int[step];
+        int depth = step - 1;
+        path[depth] = maze.getDest();
+        while (depth < step && routes.size() < maxPaths) {
+            if (depth == 0) {
+                routes.add(path.clone());
+                depth++;
+                continue;
+            }
+            int v = path[depth];
+            int previous = code(depth);
+            int u = -1;
+            while (u < 0 && direction[depth] < Maze3D.DEGREE) {
+                u = maze.neighbour(v, direction[depth]++);
+                if (u >= 0 && mark(u) != previous) {
+                    u = -1;
+                }
+            }
+            if (u < 0) {
+                direction[depth] = 0;
+                depth++;
+                continue;
+            }
+            path[--depth] = u;
+            direction[depth] = 0;
+        }
+        return routes;
+    }
+
+    /**
+     * 逐层BFS，到达终点所在的一层后停止
+     *
+     * @param counting 是否同时统计最短路径条数（结果存入destWays）
+     * @return 终点的步数（-1则无法到达）
+     */
+    private int search(boolean counting) {
+        int cells = maze.size();
+        int words = (int) (((long) cells * 2 + 63) >>> 6);
+        if (marks.length < words) {
+            marks = new long[words];
+        } else {
+            Arrays.fill(marks, 0, words, 0);
+        }
+
+        int start = maze.getStart();
+        int dest = maze.getDest();
+        if (!maze.isPassableAt(start)) {
+            return -1;
+        }
+        destWays = 1;
+        if (start == dest) {
+            return 1;
+        }
+
+        setMark(start, code(1));
+        current[0] = start;
+        currentWays[0] = 1;
+        int size = 1;
+        for (int step = 1; size > 0; step++) {
+            int nextCode = code(step + 1);
+            nextSize = 0;
+            for (int i = 0; i < size; i++) {
+                int v = current[i];
+                long ways = currentWays[i];
+                for (int k = 0; k < Maze3D.DEGREE; k++) {
+                    int u = maze.neighbour(v, k);
+                    if (u < 0) {
+                        continue;
+                    }
+                    int m = mark(u);
+                    if (m == 0) {
+                        setMark(u, nextCode);
+                        append(u, ways, counting);
+                    } else if (counting && m == nextCode) {
+                        //相邻路径点的步数最多相差1，同样标记的只能是下一层的点
+                        int slot = findSlot(u);
+                        long sum = nextWays[slot] + ways;
+                        nextWays[slot] = sum < 0 ? Long.MAX_VALUE : sum;
+                    }
+                }
+            }
+
+            if (mark(dest) == nextCode) {
+                destWays = counting ? nextWays[findSlot(dest)] : 0;
+                if (counting) {
+                    clearSlots();
+                }
+                return step + 1;
+            }
+            if (counting) {
+                clearSlots();
+            }
+
+            int[] swap = current;
+            current = next;
+            next = swap;
+            long[] swapWays = currentWays;
+            currentWays = nextWays;
+            nextWays = swapWays;
+            size = nextSize;
+        }
+        return -1;
+    }
+
+    /**
+     * 把一个路径点加入下一层
+     *
+     * @param u        路径点下标
+     * @param ways     到达该点的路径条数
+     * @param counting 是否在统计路径条数（需要记录该点在下一层中的位置）
+     */
+    private void append(int u, long ways, boolean counting) {
+        if (nextSize == next.length) {
+            next = Arrays.copyOf(next, nextSize * 2);
+            nextWays = Arrays.copyOf(nextWays, nextSize * 2);
+        }
+        next[nextSize] = u;
+        nextWays[nextSize] = ways;
+        if (counting) {
+            putSlot(u, nextSize);
+        }
+        nextSize++;
+    }
+
+    /**
+     * 清空记录下一层位置的散列表，只清除下一层用到的项，避免每层都填充整张表
+     */
+    private void clearSlots() {
+        int mask = slotKeys.length - 1;
+        for (int i = 0; i < nextSize; i++) {
+            int h = (next[i] * 0x9E3779B9) & mask;
+            while (slotKeys[h] != next[i]) {
+                h = (h + 1) & mask;
+            }
+            slotKeys[h] = -1;
+        }
+    }
+
+    /**
+     * 记录路径点在下一层中的位置（开放寻址，装满一半时扩容）
+     *
+     * @param key  路径点下标
+     * @param slot 在下一层中的位置
+     */
+    private void putSlot(int key, int slot) {
+        if (nextSize * 2 >= slotKeys.length) {
+            int[] keys = slotKeys;
+            slotKeys = new int[keys.length * 2];
+            slotValues = new int[keys.length * 2];
+            Arrays.fill(slotKeys, -1);
+            for (int i = 0; i < nextSize; i++) {
+                insertSlot(next[i], i);
+            }
+        }
+        insertSlot(key, slot);
+    }
+
+    /**
+     * 向散列表插入一项
+     *
+     * @param key  路径点下标
+     * @param slot 在下一层中的位置
+     */
+    private void insertSlot(int key, int slot) {
+        int mask = slotKeys.length - 1;
+        int h = (key * 0x9E3779B9) & mask;
+        while (slotKeys[h] != -1) {
+            h = (h + 1) & mask;
+        }
+        slotKeys[h] = key;
+        slotValues[h] = slot;
+    }
+
+    /**
+     * 查找路径点在下一层中的位置
+     *
+     * @param key 路径点下标（必须已在下一层中）
+     * @return 在下一层中的位置
+     */
+    private int findSlot(int key) {
+        int mask = slotKeys.length - 1;
+        int h = (key * 0x9E3779B9) & mask;
+        while (slotKeys[h] != key) {
+            h = (h + 1) & mask;
+        }
+        return slotValues[h];
+    }
+
+    /**
+     * 求步数对应的标记
+     *
+     * @param step 步数（从1开始）
+     * @return 标记（1~3）
+     */
+    private static int code(int step) {
+        return (step - 1) % 3 + 1;
+    }
+
+    /**
+     * 获取路径点的标记
+     *
+     * @param index 下标
+     * @return 标记（0为未访问）
+     */
+    private int mark(int index) {
+        return (int) (marks[index >>> 5] >>> ((index & 31) << 1)) & 3;
+    }
+
+    /**
+     * 设置未访问的路径点的标记
+     *
+     * @param index 下标
+     * @param code  标记
+     */
+    private void setMark(int index, int code) {
+        marks[index >>> 5] |= (long) code << ((index & 31) << 1);
+    }
+}
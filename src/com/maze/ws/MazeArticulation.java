@@ -0,0 +1,275 @@
+package com.maze.ws;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 起点到终点的必经路径点分析
+ * 从起点出发做一次非递归的Tarjan深度优先搜索求出割点，起点到终点的树路径上把终点一侧分开的割点，
+ * 连同起点与终点本身，就是每条起点到终点的路径都必须经过的路径点（必经点）
+ * 去掉必经点后，其余可到达的路径点分成若干区域：夹在两个相邻必经点之间的区域，或只挂在一个必经点上的区域；
+ * 据此给每个可到达的路径点一个位置（第i个必经点为2i，夹在第i与第i+1个必经点之间为2i+1，只挂在第i个必经点上为2i），
+ * 移除一个障碍物只有在它相邻路径点的位置相差超过1时才会绕开或并联某个必经点、产生新的解，判断为O(1)
+ * 所有的计算与查询都是线性或常数时间；结果是构造时迷宫的快照，除open()外迷宫修改后需要重新构造
+ *
+ * @author Wshine
+ */
+public class MazeArticulation {
+    private final Maze maze;
+    private final int width;
+    private final int height;
+    private int[] position;
+    private BitSet must;
+    private int mustCount;
+
+    /**
+     * 构造方法，立即进行分析
+     *
+     * @param maze 需要分析的迷宫
+     * @throws IllegalArgumentException 迷宫过大，无法在内存中计算或不是四连通时抛出
+     */
+    public MazeArticulation(Maze maze) {
+        if ((long) maze.width * maze.height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("迷宫过大，无法在内存中求解");
+        }
+        if (maze.getTopology().type != Topology.Type.FOUR) {
+            throw new IllegalArgumentException("必经点分析只支持四连通的迷宫");
+        }
+        this.maze = maze;
+        this.width = maze.width;
+        this.height = maze.height;
+        analyze();
+    }
+
+    /**
+     * 重新进行整个分析
+     */
+    private void analyze() {
+        int cells = width * height;
+        int[] disc = new int[cells];
+        int[] low = new int[cells];
+        int[] parent = new int[cells];
+        byte[] next = new byte[cells];
+        int[] stack = new int[cells];
+        position = new int[cells];
+        Arrays.fill(position, -1);
+        must = new BitSet();
+        mustCount = 0;
+
+        //第一部分：从起点出发的非递归Tarjan深度优先搜索
+        Maze.Point start = maze.getStartPoint();
+        Maze.Point dest = maze.getDestPoint();
+        int s = start.row * width + start.column;
+        int d = dest.row * width + dest.column;
+        int time = 0;
+        int top = 0;
+        if (maze.isPassable(start.row, start.column)) {
+            disc[s] = low[s] = ++time;
+            parent[s] = -1;
+            stack[top++] = s;
+        }
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (next[v] < 4) {
+                int u = neighbour(v, next[v]++);
+                if (u < 0 || !maze.isPassable(u / width, u % width)) {
+                    continue;
+                }
+                if (disc[u] == 0) {
+                    parent[u] = v;
+                    disc[u] = low[u] = ++time;
+                    stack[top++] = u;
+                } else if (u != parent[v]) {
+                    low[v] = Math.min(low[v], disc[u]);
+                }
+            } else {
+                top--;
+                if (parent[v] >= 0) {
+                    low[parent[v]] = Math.min(low[parent[v]], low[v]);
+                }
+            }
+        }
+        if (disc[d] == 0) {
+            return;
+        }
+
+        //第二部分：沿树路径从终点回到起点，找出把终点一侧分开的割点，按从起点到终点的顺序编号
+        int length = 0;
+        for (int v = d; v != -1; v = parent[v]) {
+            stack[length++] = v;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            int v = stack[i];
+            if (i == length - 1 || i == 0 || low[stack[i - 1]] >= disc[v]) {
+                must.set(v);
+                position[v] = 2 * mustCount++;
+            }
+        }
+
+        //第三部分：去掉必经点后对其余可到达的区域进行染色，位置由区域相邻的必经点决定
+        for (int i = 0; i < cells; i++) {
+            if (disc[i] == 0 || position[i] != -1) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            int lo = Integer.MAX_VALUE;
+            int hi = -1;
+            position[i] = -2;
+            stack[tail++] = i;
+            while (head < tail) {
+                int v = stack[head++];
+                for (int k = 0; k < 4; k++) {
+                    int u = neighbour(v, k);
+                    if (u < 0 || disc[u] == 0) {
+                        continue;
+                    }
+                    if (must.get(u)) {
+                        lo = Math.min(lo, position[u]);
+                        hi = Math.max(hi, position[u]);
+                    } else if (position[u] == -1) {
+                        position[u] = -2;
+                        stack[tail++] = u;
+                    }
+                }
+            }
+            //区域只会与一个必经点或两个相邻的必经点相邻
+            int p = lo + hi == 2 * lo ? lo : lo + 1;
+            for (int k = 0; k < tail; k++) {
+                position[stack[k]] = p;
+            }
+        }
+    }
+
+    /**
+     * 求路径点在指定方向上的相邻路径点
+     *
+     * @param v         路径点下标
+     * @param direction 方向（0上、1下、2左、3右）
+     * @return 相邻路径点的下标（超出迷宫范围为-1）
+     */
+    private int neighbour(int v, int direction) {
+        int r = v / width;
+        int c = v % width;
+        switch (direction) {
+            case 0:
+                return r > 0 ? v - width : -1;
+            case 1:
+                return r < height - 1 ? v + width : -1;
+            case 2:
+                return c > 0 ? v - 1 : -1;
+            default:
+                return c < width - 1 ? v + 1 : -1;
+        }
+    }
+
+    /**
+     * 判断起点与终点是否连通
+     *
+     * @return 一个布尔值，代表迷宫是否有解
+     */
+    public boolean isSolvable() {
+        return mustCount > 0;
+    }
+
+    /**
+     * 判断路径点是否为必经点（每条起点到终点的路径都经过该点，包括起点与终点）
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表是否为必经点（迷宫无解时都为false）
+     */
+    public boolean isMustPass(int row, int col) {
+        return must.get(row * width + col);
+    }
+
+    /**
+     * 获取必经点的个数（包括起点与终点）
+     * 必经点的个数等于最短路径长度时，最短路径是唯一的
+     *
+     * @return 必经点的个数（迷宫无解为0）
+     */
+    public int getMustPassCount() {
+        return mustCount;
+    }
+
+    /**
+     * 判断移除一个障碍物是否不会产生绕开或并联某个必经点的新路径
+     * 迷宫中起点到终点只有一条路径时，这等价于移除后仍然只有一条路径
+     *
+     * @param row 障碍物所在行
+     * @param col 障碍物所在列
+     * @return 一个布尔值，代表移除是否安全（可通行的路径点为false）
+     */
+    public boolean isSafeWall(int row, int col) {
+        if (maze.isPassable(row, col)) {
+            return false;
+        }
+        int v = row * width + col;
+        int lo = Integer.MAX_VALUE;
+        int hi = -1;
+        for (int k = 0; k < 4; k++) {
+            int u = neighbour(v, k);
+            if (u >= 0 && position[u] >= 0) {
+                lo = Math.min(lo, position[u]);
+                hi = Math.max(hi, position[u]);
+            }
+        }
+        return hi - lo <= 1;
+    }
+
+    /**
+     * 迷宫中的一个障碍物被移除后修补分析结果
+     * 移除安全的障碍物时只需给该点及因此变得可到达的区域设置位置，每个路径点最多被染色一次；否则重新分析
+     *
+     * @param row 被移除的障碍物所在行
+     * @param col 被移除的障碍物所在列
+     */
+    public void open(int row, int col) {
+        int v = row * width + col;
+        if (position[v] >= 0) {
+            return;
+        }
+        int lo = Integer.MAX_VALUE;
+        int hi = -1;
+        for (int k = 0; k < 4; k++) {
+            int u = neighbour(v, k);
+            if (u >= 0 && position[u] >= 0) {
+                lo = Math.min(lo, position[u]);
+                hi = Math.max(hi, position[u]);
+            }
+        }
+        if (hi == -1) {
+            return;
+        }
+        if (hi - lo > 1) {
+            analyze();
+            return;
+        }
+
+        //与必经点和其相邻的区域都相邻时，该点属于那个区域（奇数位置）
+        position[v] = (lo & 1) == 1 ? lo : hi;
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = v;
+        while (head < tail) {
+            int w = queue[head++];
+            for (int k = 0; k < 4; k++) {
+                int u = neighbour(w, k);
+                if (u < 0 || position[u] != -1 || !maze.isPassable(u / width, u % width)) {
+                    continue;
+                }
+                position[u] = position[v];
+                if (tail == queue.length) {
+                    int[] grown = new int[queue.length * 2];
+                    System.arraycopy(queue, head, grown, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                    queue = grown;
+                }
+                queue[tail++] = u;
+            }
+        }
+    }
+}
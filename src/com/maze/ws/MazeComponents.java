@@ -0,0 +1,234 @@
+package com.maze.ws;
+
+import java.util.stream.IntStream;
+
+/**
+ * 迷宫可通行路径点的连通分量
+ * 按行把迷宫分成若干条带，每条带内并行地用并查集合并相邻的可通行路径点，再依次合并条带之间的边界；
+ * 合并时总是以下标较小的根为新根，因此每个连通分量的标号就是其中最小的下标，与条带的划分无关
+ * 相邻关系由迷宫的拓扑决定，每个路径点只与下标比它小的相邻路径点合并
+ * 构造后可以O(1)判断两点是否连通、求连通分量的大小，适合在求解前快速判断迷宫是否有解
+ * 结果是构造时迷宫的快照，迷宫修改后需要重新构造
+ *
+ * @author Wshine
+ */
+public class MazeComponents {
+    private static final int PARALLEL_CELLS = 1 << 16;
+
+    private final Maze maze;
+    private final int width;
+    private final int height;
+    private final Topology topology;
+    private final int[] label;
+    private final int[] size;
+    private int count;
+
+    /**
+     * 构造方法，立即计算所有连通分量
+     *
+     * @param maze 需要计算的迷宫
+     * @throws IllegalArgumentException 迷宫过大，无法在内存中计算时抛出
+     */
+    public MazeComponents(Maze maze) {
+        if ((long) maze.width * maze.height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("迷宫过大，无法在内存中求解");
+        }
+        this.maze = maze;
+        this.width = maze.width;
+        this.height = maze.height;
+        this.topology = maze.getTopology();
+        int cells = width * height;
+        this.label = new int[cells];
+        this.size = new int[cells];
+
+        //路径点较少或迷宫按需加载时不值得（或不能）并行
+        int bands = 1;
+        if (cells >= PARALLEL_CELLS && !maze.isLazy()) {
+            bands = Math.min(height, Runtime.getRuntime().availableProcessors() * 4);
+        }
+        int rows = (height + bands - 1) / bands;
+        int total = (height + rows - 1) / rows;
+
+        IntStream stream = IntStream.range(0, total);
+        if (total > 1) {
+            stream = stream.parallel();
+        }
+        stream.forEach(b -> scan(b * rows, Math.min(height, (b + 1) * rows)));
+
+        for (int b = 1; b < total; b++) {
+            int top = b * rows;
+            for (int c = 0; c < width; c++) {
+                int i = top * width + c;
+                if (label[i] < 0) {
+                    continue;
+                }
+                int mask = topology.mask(top, c);
+                for (int k = 0; k < topology.degree(); k++) {
+                    //条带第一行与上一条带最后一行之间的边
+                    if ((mask & 1 << k) != 0 && topology.rowOffset(top, k) < 0
+                            && label[i + topology.offset(top, k)] >= 0) {
+                        union(i + topology.offset(top, k), i);
+                    }
+                }
+            }
+        }
+
+        //父节点的下标总是小于自身，按下标顺序一次遍历即可把每个路径点直接指向根
+        for (int i = 0; i < cells; i++) {
+            int parent = label[i];
+            if (parent < 0) {
+                continue;
+            }
+            if (parent == i) {
+                count++;
+            } else {
+                label[i] = label[parent];
+            }
+            size[label[i]]++;
+        }
+    }
+
+    /**
+     * 合并一条带内相邻的可通行路径点，只会访问该条带内的下标
+     *
+     * @param top    条带的第一行
+     * @param bottom 条带最后一行的下一行
+     */
+    private void scan(int top, int bottom) {
+        boolean four = topology.type == Topology.Type.FOUR;
+        for (int r = top; r < bottom; r++) {
+            for (int c = 0; c < width; c++) {
+                int i = r * width + c;
+                if (!maze.isPassable(r, c)) {
+                    label[i] = -1;
+                    continue;
+                }
+                label[i] = i;
+                if (four) {
+                    //四连通时下标较小的相邻路径点只有左边与上边两个
+                    if (c > 0 && label[i - 1] >= 0) {
+                        union(i - 1, i);
+                    }
+                    if (r > top && label[i - width] >= 0) {
+                        union(i - width, i);
+                    }
+                    continue;
+                }
+                int mask = topology.mask(r, c);
+                for (int k = 0; k < topology.degree(); k++) {
+                    int dr = topology.rowOffset(r, k);
+                    //只合并下标较小、且在同一条带内的相邻路径点
+                    boolean before = dr < 0 || dr == 0 && topology.colOffset(r, k) < 0;
+                    if (before && (mask & 1 << k) != 0 && (dr == 0 || r > top)
+                            && label[i + topology.offset(r, k)] >= 0) {
+                        union(i + topology.offset(r, k), i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找路径点所在集合的根，同时进行路径减半
+     *
+     * @param i 路径点下标
+     * @return 根的下标
+     */
+    private int find(int i) {
+        while (label[i] != i) {
+            label[i] = label[label[i]];
+            i = label[i];
+        }
+        return i;
+    }
+
+    /**
+     * 合并两个路径点所在的集合，下标较小的根成为新根
+     *
+     * @param a 路径点下标
+     * @param b 路径点下标
+     */
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra < rb) {
+            label[rb] = ra;
+        } else if (rb < ra) {
+            label[ra] = rb;
+        }
+    }
+
+    /**
+     * 判断起点与终点是否连通
+     *
+     * @return 一个布尔值，代表迷宫是否有解
+     */
+    public boolean connected() {
+        Maze.Point start = maze.getStartPoint();
+        Maze.Point dest = maze.getDestPoint();
+        return connected(start.row, start.column, dest.row, dest.column);
+    }
+
+    /**
+     * 判断两个路径点是否连通
+     *
+     * @param row1 第一个路径点所在行
+     * @param col1 第一个路径点所在列
+     * @param row2 第二个路径点所在行
+     * @param col2 第二个路径点所在列
+     * @return 一个布尔值，代表两点都可通行且互相可达
+     */
+    public boolean connected(int row1, int col1, int row2, int col2) {
+        int a = label(row1, col1);
+        return a >= 0 && a == label(row2, col2);
+    }
+
+    /**
+     * 求路径点所在连通分量的大小
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 连通分量中可通行路径点的个数（障碍物为0）
+     */
+    public int componentSize(int row, int col) {
+        int l = label(row, col);
+        return l < 0 ? 0 : size[l];
+    }
+
+    /**
+     * 判断路径点是否处在孤立的区域中（可通行，但与起点和终点都不连通）
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表该路径点是否孤立
+     */
+    public boolean isIsolated(int row, int col) {
+        int l = label(row, col);
+        if (l < 0) {
+            return false;
+        }
+        Maze.Point start = maze.getStartPoint();
+        Maze.Point dest = maze.getDestPoint();
+        return l != label(start.row, start.column) && l != label(dest.row, dest.column);
+    }
+
+    /**
+     * 求路径点所在连通分量的标号
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 连通分量中最小的下标（行*宽度+列，障碍物为-1）
+     */
+    public int label(int row, int col) {
+        return label[row * width + col];
+    }
+
+    /**
+     * 获取连通分量的个数
+     *
+     * @return 连通分量的个数
+     */
+    public int getComponentCount() {
+        return count;
+    }
+}
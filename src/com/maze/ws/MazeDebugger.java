@@ -1,6 +1,8 @@
 package com.maze.ws;
 
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 迷宫的调试类
@@ -11,45 +13,100 @@ import java.util.List;
 public class MazeDebugger {
 
     /**
-     * 通过指定的生成器连续生成指定数量的迷宫后对迷宫进行求解，以测试迷宫生成与求解的性能
+     * 通过指定的生成器连续生成指定数量的迷宫并逐个求解，以测试迷宫生成与求解的性能
+     * 每个迷宫求解后即被丢弃，耗时与最短路径长度记录在固定内存的直方图中
      *
      * @param generator 迷宫生成器
      * @param cot 生成数量
      */
     public static void analyzeMazes(MazeGenerator generator, int cot) {
-        int routeCount = 0;
-        MazeSolver solver = new MazeSolver(generator.generate());
+        analyze(generator, cot, Long.MAX_VALUE);
+    }
 
-        long time = System.currentTimeMillis();
-        List<Maze> mazeList = generator.generate(cot);
-        time = System.currentTimeMillis() - time;
-        System.out.println("生成完毕(" + cot + "/" + cot + ")");
-        System.out.println("总耗时：" + time + "ms");
-        System.out.println("平均耗时：" + time / (double) cot + "ms\n");
+    /**
+     * 在指定的时间内通过指定的生成器不断生成迷宫并逐个求解，迷宫数量只受时间限制
+     *
+     * @param generator 迷宫生成器
+     * @param millis    持续的毫秒数
+     */
+    public static void analyzeMazesFor(MazeGenerator generator, long millis) {
+        analyze(generator, Integer.MAX_VALUE, millis);
+    }
 
-        List<Route> routes;
+    /**
+     * 流式地生成并求解迷宫，达到数量或时间限制后输出统计结果
+     *
+     * @param generator 迷宫生成器
+     * @param cot       最多生成的数量
+     * @param millis    最长持续的毫秒数
+     */
+    private static void analyze(MazeGenerator generator, int cot, long millis) {
+        Histogram genNanos = new Histogram();
+        Histogram solveNanos = new Histogram();
+        Histogram steps = new Histogram();
+        Histogram paths = new Histogram();
+        MazeSolver solver = new MazeSolver(null);
 
-        time = System.currentTimeMillis();
-        for (Maze maze : mazeList) {
+        long begin = System.nanoTime();
+        long deadline = begin + Math.min(millis, Long.MAX_VALUE / 2_000_000) * 1_000_000;
+        int count = 0;
+        while (count < cot && System.nanoTime() - deadline < 0) {
+            long time = System.nanoTime();
+            Maze maze = generator.generate();
+            long generated = System.nanoTime();
             solver.changeMaze(maze);
-            routes = solver.solve();
-            routeCount += routes.get(0).getStep();
+            List<Route> routes = solver.solve();
+            long solved = System.nanoTime();
+
+            genNanos.record(generated - time);
+            solveNanos.record(solved - generated);
+            steps.record(routes.isEmpty() ? 0 : routes.get(0).getStep());
+            paths.record(routes.size());
+            count++;
         }
-        time = System.currentTimeMillis() - time;
+        long total = System.nanoTime() - begin;
 
-        System.out.println("全部迷宫已计算完毕(" + cot + "/" + cot + ")");
-        System.out.println("平均用时：" + time / (double) cot + "ms");
-        System.out.println("平均最短路径长度为" + routeCount / (double) cot + "\n");
+        System.out.println("全部迷宫已生成并计算完毕(" + count + ")，总耗时：" + total / 1000000 + "ms");
+        System.out.println("生成耗时：" + percentiles(genNanos));
+        System.out.println("求解耗时：" + percentiles(solveNanos));
+        System.out.println("最短路径长度：平均" + String.format("%.2f", steps.getMean()) + "，p50 " + steps.getPercentile(50)
+                + "，最大" + steps.getMax());
+        System.out.println("最短路径条数：平均" + String.format("%.2f", paths.getMean()) + "，最大" + paths.getMax() + "\n");
+    }
+
+    /**
+     * 把以纳秒为单位的耗时直方图格式化为平均值、分位数与最大值
+     *
+     * @param h 耗时直方图
+     * @return 格式化后的字符串（以毫秒为单位）
+     */
+    private static String percentiles(Histogram h) {
+        return String.format("平均%.3fms，p50 %.3fms，p90 %.3fms，p99 %.3fms，最大%.3fms", h.getMean() / 1e6,
+                h.getPercentile(50) / 1e6, h.getPercentile(90) / 1e6, h.getPercentile(99) / 1e6, h.getMax() / 1e6);
     }
 
     /**
      * 比较当前解决方法的正确性
+     * 以MazeRegression中朴素的BFS为基准，比较最短路径长度、条数以及枚举出的路径集合；
+     * 起点或终点为障碍物时只检查求解结果为空
      *
      * @param solver 一个迷宫求解器
-     * @return 对拍方法和当前方法所得结果是否一致
+     * @return 基准方法和当前方法所得结果是否一致
      */
     public static boolean compare(MazeSolver solver) {
-        return solver.solve().equals(solver.solveHistory());
+        Maze maze = solver.getMaze();
+        Maze.Point start = maze.getStartPoint();
+        Maze.Point dest = maze.getDestPoint();
+        if (!maze.isPassable(start.row, start.column) || !maze.isPassable(dest.row, dest.column)) {
+            return solver.solve().isEmpty();
+        }
+
+        MazeRegression regression = new MazeRegression(1);
+        regression.check(maze, "对拍");
+        for (String failure : regression.getFailures()) {
+            System.out.println(failure);
+        }
+        return regression.getFailures().isEmpty();
     }
 
     /**
@@ -115,4 +172,104 @@ public class MazeDebugger {
         return generator.generate();
 
     }
+
+    /**
+     * 比较不同存储布局下BFS的吞吐量
+     * 随机生成一个指定边长、障碍密度为25%的迷宫，分别以按行存储与Z序存储各求解若干次，输出平均耗时
+     *
+     * @param size   迷宫边长（建议4096及以上）
+     * @param rounds 每种布局的求解次数（另有一次预热）
+     */
+    public static void benchmarkLayouts(int size, int rounds) {
+        Maze maze = randomMaze(size, 25, size);
+        long cells = (long) size * size - (long) (maze.countAlpha() * size * size / 100);
+
+        for (CellLayout.Type type : CellLayout.Type.values()) {
+            MazeSolver solver = new MazeSolver(maze.withLayout(type));
+            int step = solver.countStep();
+
+            long time = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                solver.countStep();
+            }
+            time = (System.nanoTime() - time) / rounds;
+
+            System.out.println(type + "：最短路径长度" + step + "，平均用时" + time / 1000000.0 + "ms，"
+                    + String.format("%.1f", cells * 1000.0 / time) + "M路径点/秒");
+        }
+    }
+
+    /**
+     * 比较逐点BFS与按位并行BFS的求解耗时
+     * 随机生成一个指定边长与障碍密度的迷宫，两种方法各求解若干次，输出平均耗时
+     *
+     * @param size   迷宫边长
+     * @param alpha  障碍密度（百分比）
+     * @param rounds 每种方法的求解次数（另有一次预热）
+     */
+    public static void benchmarkBitParallel(int size, int alpha, int rounds) {
+        Maze maze = randomMaze(size, alpha, size);
+        MazeSolver solver = new MazeSolver(maze);
+        BitParallelSolver bitSolver = new BitParallelSolver(maze);
+        System.out.println("最短路径长度：" + solver.countStep() + " / " + bitSolver.countStep());
+
+        long time = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            solver.countStep();
+        }
+        System.out.println("逐点BFS平均用时：" + (System.nanoTime() - time) / rounds / 1000000.0 + "ms");
+
+        time = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            bitSolver.countStep();
+        }
+        System.out.println("按位并行BFS平均用时：" + (System.nanoTime() - time) / rounds / 1000000.0 + "ms");
+    }
+
+    /**
+     * 比较不同并行度下分块生成大迷宫的耗时
+     * 并行度从1开始每次翻倍，直到处理器个数，相同的种子生成的迷宫都相同
+     *
+     * @param size  迷宫边长
+     * @param alpha 障碍密度（百分比）
+     */
+    public static void benchmarkTiled(int size, int alpha) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int parallelism = 1; ; parallelism = Math.min(parallelism * 2, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            TiledMazeGenerator generator = new TiledMazeGenerator(size, size, alpha, 0, 0, size - 1, size - 1, size, 64, pool);
+            long time = System.nanoTime();
+            Maze maze = generator.generate();
+            time = System.nanoTime() - time;
+            pool.shutdown();
+            System.out.println("并行度" + parallelism + "：用时" + time / 1000000.0 + "ms，障碍密度" + maze.countAlpha()
+                    + "，哈希值" + Long.toHexString(maze.contentHash()));
+            if (parallelism == processors) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 随机生成一个指定边长与障碍密度的正方形迷宫（不保证有解），起点与终点分别在左上角与右下角
+     *
+     * @param size  迷宫边长
+     * @param alpha 障碍密度（百分比）
+     * @param seed  随机种子
+     * @return 生成的迷宫
+     */
+    static Maze randomMaze(int size, int alpha, long seed) {
+        Random rand = new Random(seed);
+        Maze maze = new Maze(size, size, 0, 0, size - 1, size - 1);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (rand.nextInt(100) < alpha) {
+                    maze.getUnit(i, j).setValue(1);
+                }
+            }
+        }
+        maze.getStartPoint().setValue(0);
+        maze.getDestPoint().setValue(0);
+        return maze;
+    }
 }
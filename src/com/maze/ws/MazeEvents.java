@@ -0,0 +1,137 @@
+package com.maze.ws;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 迷宫生成与求解的JFR自定义事件
+ * 未开启飞行记录时，事件的begin()与commit()均为空操作
+ *
+ * @author Wshine
+ */
+final class MazeEvents {
+
+    private MazeEvents() {
+    }
+
+    /**
+     * 一次完整的MazeGenerator.generate()调用
+     */
+    @Name("com.maze.ws.Generate")
+    @Label("Maze Generate")
+    @Category({"Maze", "Generator"})
+    @Description("一次完整的迷宫生成")
+    static final class GenerateEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Alpha")
+        int alpha;
+        @Label("GenCore Attempts")
+        int attempts;
+        @Label("Retries")
+        int retries;
+    }
+
+    /**
+     * 一次MazeGenerator.genCore()调用
+     */
+    @Name("com.maze.ws.GenCore")
+    @Label("Maze GenCore")
+    @Category({"Maze", "Generator"})
+    @Description("一次迷宫生成核心过程")
+    static final class GenCoreEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Alpha")
+        int alpha;
+        @Label("Step")
+        @Description("最短路径长度，-1表示无解")
+        int step;
+    }
+
+    /**
+     * 一次MazeGenerator.fillRoute()调用
+     */
+    @Name("com.maze.ws.FillRoute")
+    @Label("Maze FillRoute")
+    @Category({"Maze", "Generator"})
+    @Description("填充死路")
+    static final class FillRouteEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Alpha")
+        int alpha;
+        @Label("Amount")
+        int amount;
+        @Label("Paths")
+        @Description("开始填充时的死路末端数量")
+        int paths;
+    }
+
+    /**
+     * 一次MazeGenerator.digRoute()调用
+     */
+    @Name("com.maze.ws.DigRoute")
+    @Label("Maze DigRoute")
+    @Category({"Maze", "Generator"})
+    @Description("清除多余障碍物")
+    static final class DigRouteEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Alpha")
+        int alpha;
+        @Label("Amount")
+        int amount;
+    }
+
+    /**
+     * 一次MazeSolver.solve()调用
+     */
+    @Name("com.maze.ws.Solve")
+    @Label("Maze Solve")
+    @Category({"Maze", "Solver"})
+    @Description("一次完整的迷宫求解")
+    static final class SolveEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Alpha")
+        @Description("障碍密度（百分比）")
+        double alpha;
+        @Label("Expanded")
+        int expanded;
+        @Label("Step")
+        @Description("最短路径长度，0表示无解")
+        int step;
+        @Label("Paths")
+        int paths;
+    }
+
+    /**
+     * MazeSolver.solve()中的一个阶段（BFS或路径回溯）
+     */
+    @Name("com.maze.ws.SolvePhase")
+    @Label("Maze Solve Phase")
+    @Category({"Maze", "Solver"})
+    @Description("迷宫求解中的一个阶段")
+    static final class SolvePhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.*;
 
 /**
  * 迷宫生成类
+ * 相邻关系由迷宫的拓扑决定；必经点分析只支持四连通，其它拓扑下挖洞时不保护最短路径，唯一性也只按路径条数判断
  *
  * @author Wshine
  */
@@ -13,12 +14,61 @@ public class MazeGenerator {
     public final int height;
     public final int alpha;
     private final Maze maze;
-    private final Random rand = new Random();
+    private final MazeSolver solver;
+    private final Random rand;
+    private MazeMetrics metrics = MazeMetrics.NONE;
 
     private final int amountPassing;
 
     public MazeGenerator(int width,int height, int alpha, int startRow, int startCol, int destRow, int destCol) {
-        Maze cache = new Maze(width, height, startRow, startCol, destRow, destCol);
+        this(width, height, alpha, startRow, startCol, destRow, destCol, new Random(), Topology.Type.FOUR);
+    }
+
+    /**
+     * 构造方法，使用指定的随机种子，相同的参数与种子总是生成相同的迷宫序列
+     *
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param alpha    障碍密度（百分比）
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @param seed     随机种子
+     * @throws IllegalArgumentException 障碍物密度过高，生成的迷宫必然无解时抛出
+     */
+    public MazeGenerator(int width, int height, int alpha, int startRow, int startCol, int destRow, int destCol, long seed) {
+        this(width, height, alpha, startRow, startCol, destRow, destCol, new Random(seed), Topology.Type.FOUR);
+    }
+
+    /**
+     * 构造方法，生成使用指定拓扑的迷宫，相同的参数与种子总是生成相同的迷宫序列
+     *
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param alpha    障碍密度（百分比）
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @param seed     随机种子
+     * @param topology 拓扑类型
+     * @throws IllegalArgumentException 障碍物密度过高，生成的迷宫必然无解时抛出
+     */
+    public MazeGenerator(int width, int height, int alpha, int startRow, int startCol, int destRow, int destCol, long seed,
+                         Topology.Type topology) {
+        this(width, height, alpha, startRow, startCol, destRow, destCol, new Random(seed), topology);
+    }
+
+    /**
+     * 构造方法，使用指定的随机数生成器
+     *
+     * @param rand     随机数生成器
+     * @param topology 拓扑类型
+     */
+    private MazeGenerator(int width, int height, int alpha, int startRow, int startCol, int destRow, int destCol, Random rand,
+                          Topology.Type topology) {
+        Maze cache = new Maze(width, height, startRow, startCol, destRow, destCol, CellLayout.Type.ROW_MAJOR, topology);
         amountPassing = width * height - (int) (width * height * alpha / 100.0 + 0.5);
         if (amountPassing < cache.getStartPoint().distance(cache.getDestPoint())) {
             throw new IllegalArgumentException("障碍物密度过高，生成迷宫无解。");
@@ -28,6 +78,17 @@ public class MazeGenerator {
         this.height = height;
         this.alpha = alpha;
         this.maze = cache;
+        this.solver = new MazeSolver(cache);
+        this.rand = rand;
+    }
+
+    /**
+     * 设置性能指标的接收者
+     *
+     * @param metrics 指标接收者（null则不记录）
+     */
+    public void setMetrics(MazeMetrics metrics) {
+        this.metrics = metrics == null ? MazeMetrics.NONE : metrics;
     }
 
     public static void main(String[] args) throws IOException {
@@ -67,31 +128,68 @@ public class MazeGenerator {
      * @return 生成的迷宫
      */
     public Maze generate() {
-        MazeSolver solver;
-        List<Route> answer;
-
-        //生成迷宫，若迷宫无解或最短路径步数超过了步数限制，则重新生成
-        int step;
-        do {
-            step = genCore();
-        } while (step == -1 || step > amountPassing);
-
-        //计算需要填充或移除的障碍数，并进行相应的操作
-        int amount = amountPassing - (maze.width * maze.height - maze.getAllWalls().size());
-        if (amount > 0) {
-            digRoute(amount);
-        } else if (amount < 0) {
-            fillRoute(Math.abs(amount));
-        }
+        //只有设置了指标接收者时才计时
+        boolean timing = metrics != MazeMetrics.NONE;
+        int attempts = 0;
+        int retries = 0;
+        long genTime = 0;
+        long digTime = 0;
+        long fillTime = 0;
+        MazeEvents.GenerateEvent event = new MazeEvents.GenerateEvent();
+        event.begin();
+
+        while (true) {
+            long time = timing ? System.nanoTime() : 0;
+
+            //生成迷宫，若迷宫无解或最短路径步数超过了步数限制，则重新生成
+            int step;
+            do {
+                step = genCore();
+                attempts++;
+            } while (step == -1 || step > amountPassing);
+
+            if (timing) {
+                long now = System.nanoTime();
+                genTime += now - time;
+                time = now;
+            }
+
+            //计算需要填充或移除的障碍数，并进行相应的操作
+            int amount = amountPassing - (maze.width * maze.height - (int) maze.wallCount());
+            if (amount > 0) {
+                digRoute(amount);
+                if (timing) {
+                    digTime += System.nanoTime() - time;
+                }
+            } else if (amount < 0) {
+                fillRoute(Math.abs(amount));
+                if (timing) {
+                    fillTime += System.nanoTime() - time;
+                }
+            }
 
-        //特判，若障碍密度大于等于30%，则只允许有一个最优路径，否则重新生成
-        //建议在日常使用时删除
-        if (maze.width == 20 && maze.height == 20 && alpha > 29) {
-            solver = new MazeSolver(maze);
-            answer = solver.solve();
-            if (answer.size() != 1) {
-                return generate();
+            //特判，若障碍密度大于等于30%，则只允许有一个最优路径，否则重新生成
+            //建议在日常使用时删除
+            if (maze.width == 20 && maze.height == 20 && alpha > 29) {
+                if (!isUnique()) {
+                    retries++;
+                    continue;
+                }
             }
+            break;
+        }
+
+        if (timing) {
+            metrics.onGenerate(maze, attempts, retries, genTime, digTime, fillTime);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.alpha = alpha;
+            event.attempts = attempts;
+            event.retries = retries;
+            event.commit();
         }
 
         //返回时拷贝迷宫以保证不出现引用造成的潜在问题
@@ -104,7 +202,8 @@ public class MazeGenerator {
      * @return 生成迷宫的最短路径长度（-1则该迷宫无解）
      */
     private int genCore() {
-        Random rand = new Random();
+        MazeEvents.GenCoreEvent event = new MazeEvents.GenCoreEvent();
+        event.begin();
         Maze.Point start = maze.getStartPoint();
         Maze.Point dest = maze.getDestPoint();
 
@@ -126,13 +225,6 @@ public class MazeGenerator {
             List<Maze.Point> pointWalls = maze.getWalls(point);
             List<Maze.Point> cache = new ArrayList<>();
             for (Maze.Point p : pointWalls) {
-                //对周围障碍的染色操作
-                if (p.color == 0) {
-                    p.color = point.color;
-                } else if (p.color != point.color) {
-                    p.color = 3;
-                }
-
                 if (maze.isDeadEnd(p)) {
                     //如果障碍物移除后仍不会形成通路，则加入该点
                     cache.add(p);
@@ -158,17 +250,35 @@ public class MazeGenerator {
 
         }
 
-        //找到所有的染色障碍物，并随机移除其中一个障碍物
-        List<Maze.Point> mixedWalls = maze.getAllWalls(3);
-        if (mixedWalls.size() > 0) {
-            mixedWalls.get(rand.nextInt(mixedWalls.size())).setValue(0);
-        }
-
         //将起点和终点打通
         digPointToRoad(start);
         digPointToRoad(dest);
 
-        return countStep();
+        /*
+         * 只计算一次连通分量：起点与终点不连通时，在同时与两者的连通分量相邻的障碍物中随机移除一个，
+         * 找不到这样的障碍物则迷宫必然无解，不必再进行BFS
+         */
+        MazeComponents components = new MazeComponents(maze);
+        int from = components.label(start.row, start.column);
+        int to = components.label(dest.row, dest.column);
+        boolean connected = from == to;
+        if (!connected) {
+            List<Maze.Point> bridges = getBridges(components, from, to);
+            if (bridges.size() > 0) {
+                bridges.get(rand.nextInt(bridges.size())).setValue(0);
+                connected = true;
+            }
+        }
+        int step = connected ? solver.countStep() : -1;
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.alpha = alpha;
+            event.step = step;
+            event.commit();
+        }
+        return step;
     }
 
     /**
@@ -197,10 +307,8 @@ public class MazeGenerator {
         Maze.Point dest = maze.getDestPoint();
 
         Maze.Point p1 = getRandPoint(start);
-        p1.color = 1;
         p1.setValue(0);
         Maze.Point p2 = getRandPoint(dest);
-        p2.color = 2;
         p1.setValue(0);
 
         list.add(p1);
@@ -222,13 +330,13 @@ public class MazeGenerator {
 
         if (p.row > midRow) {
             if (p.column > midCol) {
-                return maze.getUnit(rand.nextInt(midRow), rand.nextInt(midCol) + midRow + 1);
+                return maze.getUnit(rand.nextInt(midRow), rand.nextInt(midCol) + midCol + 1);
             } else {
                 return maze.getUnit(rand.nextInt(midRow), rand.nextInt(midCol));
             }
         } else {
             if (p.column > midCol) {
-                return maze.getUnit(rand.nextInt(midRow) + midRow + 1, rand.nextInt(midCol) + midRow + 1);
+                return maze.getUnit(rand.nextInt(midRow) + midRow + 1, rand.nextInt(midCol) + midCol + 1);
             } else {
                 return maze.getUnit(rand.nextInt(midRow) + midRow + 1, rand.nextInt(midCol));
             }
@@ -237,52 +345,96 @@ public class MazeGenerator {
 
     /**
      * 填充死路的方法
+     * 先保护一条最短路径，再按拓扑的方向表统计每个路径点的可通行邻居数，反复随机填充邻居数不超过1的死路末端，
+     * 并更新其邻居的计数（逐层剥离死路）；每个路径点至多进入一次死路末端的候选，时间复杂度与路径点数成正比
+     * 死路剥完后障碍仍然不够（剩下的路径点都在环上）时，随机填充一个不在最短路径上的路径点打破环，再继续剥离
      *
      * @param amount 需要填充的障碍物个数
      */
     private void fillRoute(int amount) {
-        //规定的障碍过多时使用，先bfs寻找主路并进行保护，再寻找每个死路，然后向前填充
-        List<Route> deadEnds = new ArrayList<>();
-        Route rightRoute = null;
-
-        Queue<Route> queue = new LinkedList<>();
-        Route route = new Route(maze);
-        route.addPoint(maze.getStartPoint());
-        queue.add(route);
-
-        while (!queue.isEmpty()) {
-            Route pack = queue.poll();
-            List<Maze.Point> passes = maze.getPasses(pack.getTop());
-            for (Maze.Point pass : passes) {
-                if (!pack.contains(pass)) {
-                    route = pack.getCopy();
-                    route.addPoint(pass);
-                    if (maze.isDestPoint(pass)) {
-                        rightRoute = route;
-                        continue;
+        MazeEvents.FillRouteEvent event = new MazeEvents.FillRouteEvent();
+        event.begin();
+        event.amount = amount;
+        Topology topology = maze.getTopology();
+        int cells = width * height;
+
+        //调用该方法前已保证有至少一条正确路径
+        boolean[] guarded = new boolean[cells];
+        for (int index : solver.solve(SolveBudget.unlimited(), null, 1).getPath(0)) {
+            guarded[index] = true;
+        }
+
+        int[] degree = new int[cells];
+        int[] deadEnds = new int[cells];
+        int[] rest = new int[cells];
+        int dead = 0;
+        int remaining = 0;
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                int index = i * width + j;
+                if (!maze.isPassable(i, j)) {
+                    continue;
+                }
+                int mask = topology.mask(i, j);
+                for (int k = 0; k < topology.degree(); k++) {
+                    if ((mask & 1 << k) != 0 && maze.isPassable(i + topology.rowOffset(i, k), j + topology.colOffset(i, k))) {
+                        degree[index]++;
                     }
-                    if (maze.isDeadEnd(pass)) {
-                        deadEnds.add(route);
-                    } else {
-                        queue.add(route);
+                }
+                if (!guarded[index]) {
+                    rest[remaining++] = index;
+                    if (degree[index] <= 1) {
+                        deadEnds[dead++] = index;
                     }
                 }
             }
         }
+        int paths = dead;
 
-        while (amount > 0 && !deadEnds.isEmpty()) {
-            int index = rand.nextInt(deadEnds.size());
-            Route deadRoute = deadEnds.get(index);
-            if (!deadRoute.isEmpty() && !rightRoute.contains(deadRoute.getTop()) && maze.canPass(deadRoute.getTop())) {
-                //将不与正确路径重合的路径点填充障碍物（调用该方法前已保证有至少一条正确路径，故rightRoute不会为null）
-                deadRoute.pop().setValue(1);
-                amount--;
+        while (amount > 0) {
+            int index;
+            if (dead > 0) {
+                int k = rand.nextInt(dead);
+                index = deadEnds[k];
+                deadEnds[k] = deadEnds[--dead];
+            } else if (remaining > 0) {
+                int k = rand.nextInt(remaining);
+                index = rest[k];
+                rest[k] = rest[--remaining];
             } else {
-                deadEnds.remove(index);
+                break;
+            }
+            int row = index / width;
+            int col = index % width;
+            if (!maze.isPassable(row, col)) {
+                continue;
             }
 
+            maze.getUnit(row, col).setValue(1);
+            amount--;
+            int mask = topology.mask(row, col);
+            for (int k = 0; k < topology.degree(); k++) {
+                if ((mask & 1 << k) == 0) {
+                    continue;
+                }
+                int r = row + topology.rowOffset(row, k);
+                int c = col + topology.colOffset(row, k);
+                int next = r * width + c;
+                if (maze.isPassable(r, c) && --degree[next] == 1 && !guarded[next]) {
+                    //邻居成为新的死路末端
+                    deadEnds[dead++] = next;
+                }
+            }
         }
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.alpha = alpha;
+            event.paths = paths;
+            event.commit();
+        }
     }
 
     /**
@@ -291,94 +443,132 @@ public class MazeGenerator {
      * @param amount 需要清除的障碍物个数
      */
     private void digRoute(int amount) {
+        MazeEvents.DigRouteEvent event = new MazeEvents.DigRouteEvent();
+        event.begin();
+        event.amount = amount;
         /*
-         * 规定的障碍不够时使用，先bfs寻找主路，将主路和周围的障碍物保护起来，再随机在其它障碍上挖洞
-         * 调用方法前已保证至少拥有一条正确路径，故rightRoute最终不会为null
+         * 规定的障碍不够时使用，先求出必经点分析，随机在移除后不会产生新路径的障碍上挖洞，
+         * 每挖一个洞只需O(1)修补分析结果；不安全的障碍物保护起来
          */
-        Route rightRoute = null;
-
-        Queue<Route> queue = new LinkedList<>();
-        Route route = new Route(maze);
-        route.addPoint(maze.getStartPoint());
-        queue.add(route);
-
-        while (!queue.isEmpty()) {
-            Route pack = queue.poll();
-            List<Maze.Point> passes = maze.getPasses(pack.getTop());
-            for (Maze.Point pass : passes) {
-                if (!pack.contains(pass)) {
-                    route = pack.getCopy();
-                    route.addPoint(pass);
-                    if (maze.isDestPoint(pass)) {
-                        rightRoute = route;
-                    } else {
-                        queue.add(route);
-                    }
-                }
-            }
-        }
-
-        maze.initColor(0);
-        while (!rightRoute.isEmpty()) {
-            Maze.Point p = rightRoute.pop();
-            for (Maze.Point wall : maze.getWalls(p)) {
-                //利用对障碍物进行染色的方法来标记保护
-                wall.color = 1;
-            }
-        }
-
-        List<Maze.Point> walls = maze.getAllWalls(0);
+        MazeArticulation cuts = isFour() ? new MazeArticulation(maze) : null;
+        List<Maze.Point> guarded = new ArrayList<>();
+        List<Maze.Point> walls = getWalls();
         while (amount > 0 && !walls.isEmpty()) {
             int index = rand.nextInt(walls.size());
-            walls.get(index).setValue(0);
-            walls.remove(index);
-            amount--;
+            Maze.Point wall = walls.remove(index);
+            if (cuts == null) {
+                wall.setValue(0);
+                amount--;
+            } else if (cuts.isSafeWall(wall.row, wall.column)) {
+                wall.setValue(0);
+                cuts.open(wall.row, wall.column);
+                amount--;
+            } else {
+                guarded.add(wall);
+            }
         }
 
         //若清除所有未保护障碍物后障碍物仍然过多，则在被保护的障碍物中进行随机删除
-        walls = maze.getAllWalls(1);
         while (amount > 0) {
-            int index = rand.nextInt(walls.size());
-            walls.get(index).setValue(0);
-            walls.remove(index);
+            int index = rand.nextInt(guarded.size());
+            guarded.remove(index).setValue(0);
             amount--;
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.alpha = alpha;
+            event.commit();
+        }
     }
 
     /**
-     * 重置整个迷宫（将所有路径点设置成障碍物，并清除路径点颜色）
+     * 判断当前迷宫的最短路径是否唯一
+     * 必经点的个数等于最短路径长度时直接接受，否则按层统计最短路径条数，都不需要逐条记录路径
+     *
+     * @return 一个布尔值，代表最短路径是否唯一
+     */
+    private boolean isUnique() {
+        int step = solver.countStep();
+        if (step == -1) {
+            return false;
+        }
+        if (isFour() && new MazeArticulation(maze).getMustPassCount() == step) {
+            return true;
+        }
+        return solver.countPaths() == 1;
+    }
+
+    /**
+     * 判断生成的迷宫是否为四连通（只有四连通时才能使用必经点分析）
+     *
+     * @return 一个布尔值，代表是否为四连通
+     */
+    private boolean isFour() {
+        return maze.getTopology().type == Topology.Type.FOUR;
+    }
+
+    /**
+     * 重置整个迷宫（将所有路径点设置成障碍物）
      */
     private void reset() {
         maze.init(1);
-        maze.initColor(0);
     }
 
     /**
-     * 求目前迷宫的最短路径长度
+     * 获得整个迷宫中同时与两个指定连通分量相邻的障碍物（移除后可以连接这两个区域）
+     * 直接按拓扑的方向表查看相邻路径点的标号，不需要为每个障碍物构造相邻路径点的列表
      *
-     * @return 当前迷宫的最短路径长度（-1则迷宫无解）
+     * @param components 当前迷宫的连通分量
+     * @param from       起点所在连通分量的标号
+     * @param to         终点所在连通分量的标号
+     * @return 一个列表，包含所有这样的障碍物
      */
-    private int countStep() {
-        Queue<Maze.Point> points = new LinkedList<>();
-        boolean[][] visited = new boolean[maze.height][maze.width];
-        maze.initColor(1);
-
-        points.add(maze.getStartPoint());
-        while (!points.isEmpty()) {
-            Maze.Point p = points.poll();
-            if (maze.isDestPoint(p.row, p.column)) {
-                return p.color;
+    private List<Maze.Point> getBridges(MazeComponents components, int from, int to) {
+        List<Maze.Point> walls = new ArrayList<>();
+        Topology topology = maze.getTopology();
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (maze.isPassable(i, j)) {
+                    continue;
+                }
+                boolean nearFrom = false;
+                boolean nearTo = false;
+                int mask = topology.mask(i, j);
+                for (int k = 0; k < topology.degree(); k++) {
+                    if ((mask & 1 << k) != 0) {
+                        int l = components.label(i + topology.rowOffset(i, k), j + topology.colOffset(i, k));
+                        nearFrom |= l == from;
+                        nearTo |= l == to;
+                    }
+                }
+                if (nearFrom && nearTo) {
+                    walls.add(maze.getUnit(i, j));
+                }
             }
+        }
 
-            for (Maze.Point pp : maze.getPasses(p)) {
-                if (!visited[pp.row][pp.column]) {
-                    pp.color = p.color + 1;
-                    points.add(pp);
-                    visited[pp.row][pp.column] = true;
+        return walls;
+    }
+
+    /**
+     * 获得整个迷宫中的所有障碍物
+     *
+     * @return 一个列表，包含整个迷宫中的所有障碍物
+     */
+    private List<Maze.Point> getWalls() {
+        List<Maze.Point> walls = new ArrayList<>();
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!maze.isPassable(i, j)) {
+                    walls.add(maze.getUnit(i, j));
                 }
             }
         }
-        return -1;
+
+        return walls;
     }
 
 }
@@ -0,0 +1,146 @@
+package com.maze.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 迷宫求解服务的压力测试工具
+ * 预先生成一批随机迷宫的二进制请求体，由若干个客户端线程在指定时间内循环发送到/solve，
+ * 统计客户端看到的延迟分布（p50、p99）与吞吐量；未指定地址时在本机随机端口上启动一个MazeServer进行测试
+ *
+ * @author Wshine
+ */
+public class MazeLoadGenerator {
+    private final URL url;
+    private final byte[][] bodies;
+    private final Histogram latency = new Histogram();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * 构造方法，预先生成请求体
+     *
+     * @param url    求解服务的地址
+     * @param mazes  随机迷宫的数量
+     * @param size   迷宫边长
+     * @param alpha  障碍密度（百分比）
+     * @throws IOException 请求体生成失败
+     */
+    public MazeLoadGenerator(URL url, int mazes, int size, int alpha) throws IOException {
+        this.url = url;
+        this.bodies = new byte[mazes][];
+        for (int i = 0; i < mazes; i++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                FileHelper.writeBinary(MazeDebugger.randomMaze(size, alpha, i), out);
+            }
+            bodies[i] = bytes.toByteArray();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int alpha = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        MazeServer server = null;
+        URL url;
+        if (args.length > 4) {
+            url = new URL(args[4]);
+        } else {
+            server = new MazeServer(0, Runtime.getRuntime().availableProcessors(), 32, 1000);
+            server.start();
+            url = new URL("http://localhost:" + server.getPort() + "/solve");
+        }
+
+        MazeLoadGenerator generator = new MazeLoadGenerator(url, 1000, size, alpha);
+        //预热
+        generator.run(clients, Math.max(1, seconds / 5) * 1000L);
+        generator.reset();
+        System.out.print(generator.run(clients, seconds * 1000L));
+        if (server != null) {
+            System.out.print(server.report());
+            server.stop(0);
+        }
+    }
+
+    /**
+     * 运行压力测试
+     *
+     * @param clients 客户端线程数
+     * @param millis  持续的毫秒数
+     * @return 测试结果的字符串
+     * @throws InterruptedException 等待时被中断
+     */
+    public String run(int clients, long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        List<Thread> threads = new ArrayList<>();
+        long time = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int offset = i;
+            Thread thread = new Thread(() -> {
+                for (int k = offset; System.nanoTime() - deadline < 0; k += clients) {
+                    send(bodies[k % bodies.length]);
+                }
+            }, "maze-load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - time) / 1e9;
+
+        return String.format("客户端%d个，请求%d，失败%d，吞吐量%.1f个/秒%n", clients, latency.getCount(), failures.get(),
+                latency.getCount() / seconds)
+                + String.format("客户端延迟：p50 %.3fms，p99 %.3fms，最大 %.3fms%n",
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6);
+    }
+
+    /**
+     * 发送一个求解请求并读完响应，记录延迟
+     *
+     * @param body 请求体
+     */
+    private void send(byte[] body) {
+        long time = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            if (connection.getResponseCode() != 200) {
+                failures.incrementAndGet();
+            }
+            try (InputStream in = connection.getResponseCode() == 200 ? connection.getInputStream()
+                    : connection.getErrorStream()) {
+                byte[] buffer = new byte[4096];
+                while (in != null && in.read(buffer) != -1) {
+                    //读完响应，使连接可以被复用
+                }
+            }
+            latency.record(System.nanoTime() - time);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空已记录的结果
+     */
+    public void reset() {
+        latency.reset();
+        failures.set(0);
+    }
+}
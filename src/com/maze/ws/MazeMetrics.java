@@ -0,0 +1,42 @@
+package com.maze.ws;
+
+/**
+ * 迷宫性能指标接口
+ * 求解器与生成器在每次调用结束时把本次的计数与各阶段耗时一次性上报，
+ * 默认实现NONE不做任何事，且不会触发计时
+ *
+ * @author Wshine
+ */
+public interface MazeMetrics {
+    /**
+     * 空实现，不记录任何指标
+     */
+    MazeMetrics NONE = new MazeMetrics() {
+    };
+
+    /**
+     * 一次求解结束时调用
+     *
+     * @param maze         被求解的迷宫
+     * @param expanded     BFS中被展开的路径点数量
+     * @param peakQueue    BFS队列的最大长度
+     * @param routes       枚举出的最短路径数量
+     * @param bfsNanos     BFS阶段的耗时（纳秒）
+     * @param recoverNanos 路径回溯阶段的耗时（纳秒）
+     */
+    default void onSolve(Maze maze, int expanded, int peakQueue, int routes, long bfsNanos, long recoverNanos) {
+    }
+
+    /**
+     * 一次生成结束时调用
+     *
+     * @param maze      生成的迷宫
+     * @param attempts  本次generate()中genCore的调用次数
+     * @param retries   因唯一解校验不通过而整体重新生成的次数
+     * @param genNanos  genCore阶段的总耗时（纳秒）
+     * @param digNanos  digRoute阶段的总耗时（纳秒）
+     * @param fillNanos fillRoute阶段的总耗时（纳秒）
+     */
+    default void onGenerate(Maze maze, int attempts, int retries, long genNanos, long digNanos, long fillNanos) {
+    }
+}
@@ -0,0 +1,438 @@
+package com.maze.ws;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量处理迷宫文件的流水线
+ * 读入、解析、求解、写出四个阶段由有界队列相连，队列满时上游阶段阻塞等待（背压），
+ * 解析、求解、写出阶段的线程数可以分别设置；单个文件的失败或输出文件已存在只会被计数，不会中止整个流水线
+ * 文本文件为以空格分隔的01矩阵，起点与终点分别为左上角与右下角；以迷宫二进制标识开头的文件按二进制格式读入
+ * 每个迷宫的结果写到输出目录下的"原文件名.result"：第一行依次为最短路径长度、最短路径总数、是否在预算内完成，其后为第一条路径的可视化
+ *
+ * @author Wshine
+ */
+public class MazePipeline {
+    public final int parseThreads;
+    public final int solveThreads;
+    public final int writeThreads;
+    public final int queueCapacity;
+    public final long budgetMillis;
+    private final File outputDir;
+
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong collisions = new AtomicLong();
+    private final AtomicLong incomplete = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong solveNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private volatile long elapsed;
+
+    /**
+     * 流水线中传递的一项
+     */
+    private static final class Item {
+        final File source;
+        Maze maze;
+        String text;
+
+        Item(File source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * 表示上游阶段已经结束的标记
+     */
+    private static final Item END = new Item(null);
+
+    /**
+     * 构造方法
+     *
+     * @param outputDir     输出目录
+     * @param parseThreads  解析阶段的线程数
+     * @param solveThreads  求解阶段的线程数
+     * @param writeThreads  写出阶段的线程数
+     * @param queueCapacity 阶段之间每个队列的容量
+     * @param budgetMillis  每个迷宫的求解预算（毫秒，0为不限制）
+     * @throws IllegalArgumentException 参数不合法时抛出
+     */
+    public MazePipeline(File outputDir, int parseThreads, int solveThreads, int writeThreads, int queueCapacity,
+                        long budgetMillis) {
+        if (parseThreads < 1 || solveThreads < 1 || writeThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("线程数与队列容量必须为正整数");
+        }
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("预算时间不能为负数");
+        }
+        if (!outputDir.isDirectory()) {
+            throw new IllegalArgumentException("输出目录不存在：" + outputDir);
+        }
+
+        this.outputDir = outputDir;
+        this.parseThreads = parseThreads;
+        this.solveThreads = solveThreads;
+        this.writeThreads = writeThreads;
+        this.queueCapacity = queueCapacity;
+        this.budgetMillis = budgetMillis;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("用法：MazePipeline <输入目录|-> <输出目录> [--parse=N] [--solve=N] [--write=N] [--queue=N] [--budget=毫秒]");
+            System.out.println("输入为-时从标准输入逐行读取迷宫文件的路径");
+            System.exit(2);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int parse = Math.max(1, cores / 4);
+        int solve = cores;
+        int write = Math.max(1, cores / 4);
+        int queue = 1024;
+        long budget = 1000;
+        for (int i = 2; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("无法识别的参数：" + args[i]);
+            }
+            switch (option[0]) {
+                case "--parse":
+                    parse = Integer.parseInt(option[1]);
+                    break;
+                case "--solve":
+                    solve = Integer.parseInt(option[1]);
+                    break;
+                case "--write":
+                    write = Integer.parseInt(option[1]);
+                    break;
+                case "--queue":
+                    queue = Integer.parseInt(option[1]);
+                    break;
+                case "--budget":
+                    budget = Long.parseLong(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("无法识别的参数：" + args[i]);
+            }
+        }
+
+        MazePipeline pipeline = new MazePipeline(new File(args[1]), parse, solve, write, queue, budget);
+        if ("-".equals(args[0])) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            pipeline.run(() -> in.lines().filter(line -> !line.isEmpty()).map(File::new).iterator());
+        } else {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(new File(args[0]).toPath(), Files::isRegularFile)) {
+                pipeline.run(() -> new PathIterator(files.iterator()));
+            }
+        }
+        System.out.print(pipeline.report());
+    }
+
+    /**
+     * 把路径迭代器转换为文件迭代器
+     */
+    private static final class PathIterator implements Iterator<File> {
+        private final Iterator<Path> paths;
+
+        PathIterator(Iterator<Path> paths) {
+            this.paths = paths;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return paths.hasNext();
+        }
+
+        @Override
+        public File next() {
+            return paths.next().toFile();
+        }
+    }
+
+    /**
+     * 运行流水线，处理所有输入文件后返回
+     * 输入在调用线程中逐个读取，因此可以是惰性的（例如目录流或标准输入）
+     *
+     * @param inputs 输入文件
+     * @throws InterruptedException 等待时被中断
+     */
+    public void run(Iterable<File> inputs) throws InterruptedException {
+        BlockingQueue<Item> toParse = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> toSolve = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> toWrite = new ArrayBlockingQueue<>(queueCapacity);
+        CountDownLatch done = new CountDownLatch(writeThreads);
+        long time = System.nanoTime();
+
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger parsing = new AtomicInteger(parseThreads);
+        AtomicInteger solving = new AtomicInteger(solveThreads);
+        for (int i = 0; i < parseThreads; i++) {
+            threads.add(new Thread(() -> stage(toParse, toSolve, parsing, solveThreads, this::parse), "maze-parse-" + i));
+        }
+        for (int i = 0; i < solveThreads; i++) {
+            MazeSolver solver = new MazeSolver(null);
+            threads.add(new Thread(() -> stage(toSolve, toWrite, solving, writeThreads, item -> solve(solver, item)),
+                    "maze-solve-" + i));
+        }
+        for (int i = 0; i < writeThreads; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    stage(toWrite, null, null, 0, this::write);
+                } finally {
+                    done.countDown();
+                }
+            }, "maze-write-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        try {
+            for (File file : inputs) {
+                toParse.put(new Item(file));
+                read.incrementAndGet();
+            }
+        } finally {
+            for (int i = 0; i < parseThreads; i++) {
+                toParse.put(END);
+            }
+        }
+        done.await();
+        elapsed = System.nanoTime() - time;
+    }
+
+    /**
+     * 一个处理阶段
+     */
+    private interface Step {
+        /**
+         * 处理一项
+         *
+         * @param item 需要处理的项
+         * @return 一个布尔值，代表是否传给下一阶段
+         * @throws Exception 处理失败
+         */
+        boolean apply(Item item) throws Exception;
+    }
+
+    /**
+     * 一个阶段的工作线程的主循环
+     * 收到结束标记后退出，本阶段最后一个退出的线程向下一阶段的每个线程发送结束标记
+     * 单个文件抛出的异常与Error（如内存不足）都只计入失败数；无论线程因何退出，都会在finally中减少计数并转发结束标记，
+     * 保证下游阶段与run()不会永远等待
+     *
+     * @param in        输入队列
+     * @param out       输出队列（最后一个阶段为null）
+     * @param remaining 本阶段尚未退出的线程数
+     * @param consumers 下一阶段的线程数
+     * @param step      处理方法
+     */
+    private void stage(BlockingQueue<Item> in, BlockingQueue<Item> out, AtomicInteger remaining, int consumers, Step step) {
+        try {
+            while (true) {
+                Item item = in.take();
+                if (item == END) {
+                    break;
+                }
+                boolean pass;
+                try {
+                    pass = step.apply(item);
+                } catch (FileAlreadyExistsException e) {
+                    collisions.incrementAndGet();
+                    pass = false;
+                } catch (Exception | Error e) {
+                    //先丢弃该项持有的迷宫与结果文本，内存不足时尽量释放出空间
+                    item.maze = null;
+                    item.text = null;
+                    failures.incrementAndGet();
+                    System.err.println(item.source + "：" + e);
+                    pass = false;
+                }
+                if (pass && out != null) {
+                    out.put(item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (out != null && remaining.decrementAndGet() == 0) {
+                sendEnd(out, consumers);
+            }
+        }
+    }
+
+    /**
+     * 向下一阶段的每个线程发送结束标记
+     * 线程已被中断时仍然会发送完所有标记，再恢复中断状态
+     *
+     * @param out       输出队列
+     * @param consumers 下一阶段的线程数
+     */
+    private static void sendEnd(BlockingQueue<Item> out, int consumers) {
+        boolean interrupted = false;
+        int sent = 0;
+        while (sent < consumers) {
+            try {
+                out.put(END);
+                sent++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 解析阶段：读入迷宫文件
+     * 输出文件已经存在（如重复处理同一批文件）时直接跳过，不再解析与求解
+     *
+     * @param item 需要处理的项
+     * @return 总是true
+     * @throws IOException 读取失败，或输出文件已存在
+     */
+    private boolean parse(Item item) throws IOException {
+        File result = resultFile(item);
+        if (result.exists()) {
+            throw new FileAlreadyExistsException(result.getPath());
+        }
+
+        long time = System.nanoTime();
+        String path = item.source.getPath();
+        int magic;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(item.source))) {
+            magic = item.source.length() >= FileHelper.BINARY_HEADER ? in.readInt() : 0;
+        }
+        if (magic == FileHelper.BINARY_MAGIC) {
+            item.maze = FileHelper.readFromBinaryFile(path);
+        } else {
+            String s = new String(Files.readAllBytes(item.source.toPath()), StandardCharsets.UTF_8).trim();
+            int height = s.split("\n").length;
+            int width = s.split("\n")[0].trim().split(" ").length;
+            item.maze = Maze.fromString(s, 0, 0, height - 1, width - 1);
+        }
+        parsed.incrementAndGet();
+        parseNanos.addAndGet(System.nanoTime() - time);
+        return true;
+    }
+
+    /**
+     * 求解阶段：在预算内求解迷宫并生成结果文本
+     *
+     * @param solver 本线程的求解器
+     * @param item   需要处理的项
+     * @return 总是true
+     */
+    private boolean solve(MazeSolver solver, Item item) {
+        long time = System.nanoTime();
+        solver.changeMaze(item.maze);
+        SolveBudget budget = budgetMillis == 0 ? SolveBudget.unlimited() : SolveBudget.ofMillis(budgetMillis);
+        SolveResult result = solver.solve(budget, null, 1);
+        if (!result.isComplete()) {
+            incomplete.incrementAndGet();
+        }
+
+        //路径总数按层统计，只回溯第一条路径用于可视化
+        StringBuilder s = new StringBuilder();
+        s.append(result.step).append(' ').append(result.isComplete() ? solver.countPaths() : result.pathCount)
+                .append(' ').append(result.isComplete()).append('\n');
+        if (result.getKeptPathCount() > 0) {
+            s.append(result.toRoutes(item.maze).get(0).visualize());
+        }
+        item.text = s.toString();
+        item.maze = null;
+        solved.incrementAndGet();
+        solveNanos.addAndGet(System.nanoTime() - time);
+        return true;
+    }
+
+    /**
+     * 写出阶段：把结果写到输出目录
+     * 解析阶段已经跳过了输出文件存在的项，这里以原子的方式新建文件，处理期间被其它进程创建的文件同样会被发现
+     *
+     * @param item 需要处理的项
+     * @return 总是false（最后一个阶段）
+     * @throws IOException 写出失败，或输出文件已存在
+     */
+    private boolean write(Item item) throws IOException {
+        long time = System.nanoTime();
+        FileHelper.outputToFile(item.text, resultFile(item).getPath());
+        written.incrementAndGet();
+        writeNanos.addAndGet(System.nanoTime() - time);
+        return false;
+    }
+
+    /**
+     * 求一项的结果文件
+     *
+     * @param item 需要处理的项
+     * @return 输出目录下的"原文件名.result"
+     */
+    private File resultFile(Item item) {
+        return new File(outputDir, item.source.getName() + ".result");
+    }
+
+    /**
+     * 生成运行统计
+     *
+     * @return 统计信息的字符串
+     */
+    public String report() {
+        double seconds = elapsed / 1e9;
+        return String.format("文件：读入%d，解析%d，求解%d，写出%d%n", read.get(), parsed.get(), solved.get(), written.get())
+                + String.format("失败%d，输出文件已存在%d，超出求解预算%d%n", failures.get(), collisions.get(), incomplete.get())
+                + String.format("用时%.2fs，吞吐量%.1f个/秒%n", seconds, seconds == 0 ? 0 : read.get() / seconds)
+                + String.format("各阶段累计用时：解析%.1fms（%d线程），求解%.1fms（%d线程），写出%.1fms（%d线程）%n",
+                parseNanos.get() / 1e6, parseThreads, solveNanos.get() / 1e6, solveThreads,
+                writeNanos.get() / 1e6, writeThreads);
+    }
+
+    /**
+     * 获取成功写出的结果数
+     *
+     * @return 成功写出的结果数
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * 获取因输出文件已存在而跳过的文件数（大多在解析之前发现，少数在写出时发现）
+     *
+     * @return 跳过的文件数
+     */
+    public long getCollisionCount() {
+        return collisions.get();
+    }
+
+    /**
+     * 获取处理失败的文件数
+     *
+     * @return 处理失败的文件数
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+}
@@ -0,0 +1,903 @@
+package com.maze.ws;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * 求解器的对拍与性能回归测试
+ * 对拍：按固定的种子在若干边长与障碍密度下随机生成迷宫，以一个最朴素的BFS为基准，
+ * 逐个检查MazeSolver（两种存储布局、正反两个方向、路径枚举）、BitParallelSolver、DistanceField、
+ * MazeComponents、MazeArticulation与HierarchicalIndex的结果，再随机设置通行代价，以朴素的Dijkstra为基准检查WeightedSolver；
+ * 每个迷宫还会转换为八连通与六边形拓扑，检查支持这些拓扑的求解方法，并检查各拓扑下生成的迷宫；
+ * 四连通的迷宫还会转换为单层与两层的多层迷宫检查Maze3DSolver，并检查Maze3DGenerator生成的迷宫，任何不一致都会被记录；
+ * 性能：对每种求解方法在固定的迷宫上测量吞吐量（次/秒），与基线文件比较，下降超过阈值即视为回归
+ * 基线文件为Properties格式，键为测试项名称，值为吞吐量；基线文件不存在或指定--record时写入本次结果
+ *
+ * @author Wshine
+ */
+public class MazeRegression {
+    private static final int[] SIZES = {8, 16, 32, 64, 256};
+    private static final int[] ALPHAS = {0, 15, 30, 40};
+    private static final int MAX_ROUTES = 64;
+    private static final int MAX_REPORTED = 20;
+    private static final int BENCHMARK_SIZE = 256;
+    private static final int BENCHMARK_ALPHA = 30;
+    private static final int TERRAIN_COST = 9;
+
+    private final int mazes;
+    private final List<String> failures = new ArrayList<>();
+    private int failureCount;
+    private int checked;
+
+    /**
+     * 构造方法
+     *
+     * @param mazes 每种边长与障碍密度组合下对拍的迷宫数量
+     * @throws IllegalArgumentException 数量不是正整数时抛出
+     */
+    public MazeRegression(int mazes) {
+        if (mazes < 1) {
+            throw new IllegalArgumentException("迷宫数量必须为正整数");
+        }
+        this.mazes = mazes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File baselineFile = new File("regression-baseline.properties");
+        boolean record = false;
+        int mazes = 20;
+        double threshold = 25;
+        long millis = 1000;
+        for (String arg : args) {
+            if ("--record".equals(arg)) {
+                record = true;
+                continue;
+            }
+            if (!arg.startsWith("--")) {
+                baselineFile = new File(arg);
+                continue;
+            }
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("无法识别的参数：" + arg);
+            }
+            switch (option[0]) {
+                case "--mazes":
+                    mazes = Integer.parseInt(option[1]);
+                    break;
+                case "--threshold":
+                    threshold = Double.parseDouble(option[1]);
+                    break;
+                case "--millis":
+                    millis = Long.parseLong(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("无法识别的参数：" + arg);
+            }
+        }
+
+        MazeRegression regression = new MazeRegression(mazes);
+        long time = System.nanoTime();
+        int failed = regression.checkCorrectness();
+        System.out.println("对拍" + regression.getCheckedCount() + "个迷宫，错误" + failed + "处，用时"
+                + (System.nanoTime() - time) / 1000000 + "ms");
+        for (String failure : regression.getFailures()) {
+            System.out.println("  " + failure);
+        }
+
+        Map<String, Double> current = benchmark(millis);
+        List<String> regressions = Collections.emptyList();
+        if (record || !baselineFile.exists()) {
+            saveBaseline(current, baselineFile);
+            System.out.println("已写入性能基线：" + baselineFile);
+        } else {
+            regressions = compareBaseline(current, loadBaseline(baselineFile), threshold);
+        }
+        for (Map.Entry<String, Double> e : current.entrySet()) {
+            System.out.println(String.format("%-32s%12.1f次/秒", e.getKey(), e.getValue()));
+        }
+        for (String slower : regressions) {
+            System.out.println("性能回归：" + slower);
+        }
+
+        if (failed > 0 || !regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 在所有边长与障碍密度组合下对拍
+     *
+     * @return 本次发现的错误数量
+     */
+    public int checkCorrectness() {
+        int before = failureCount;
+        for (int size : SIZES) {
+            for (int alpha : ALPHAS) {
+                for (int i = 0; i < mazes; i++) {
+                    long seed = size * 1_000_003L + alpha * 1009L + i;
+                    Maze maze = MazeDebugger.randomMaze(size, alpha, seed);
+                    String name = "边长" + size + "，障碍密度" + alpha + "，种子" + seed;
+                    check(maze, name);
+                    check(maze.withTopology(Topology.Type.EIGHT), name + "，八连通");
+                    check(maze.withTopology(Topology.Type.HEX), name + "，六边形");
+                }
+            }
+        }
+        for (Topology.Type type : Topology.Type.values()) {
+            checkGenerator(type);
+        }
+        checkGenerator3D();
+        return failureCount - before;
+    }
+
+    /**
+     * 检查指定拓扑下以30%到60%的密度生成的迷宫：有解，且障碍物数量与指定的密度一致
+     * 高密度时生成器需要大量填充死路，可以发现填充方法的耗时随拓扑的邻居数急剧增长的问题
+     *
+     * @param type 拓扑类型
+     */
+    private void checkGenerator(Topology.Type type) {
+        for (int alpha = 30; alpha <= 60; alpha += 10) {
+            MazeGenerator generator = new MazeGenerator(20, 20, alpha, 0, 0, 19, 19, type.ordinal(), type);
+            for (int i = 0; i < mazes; i++) {
+                checked++;
+                Maze maze = generator.generate();
+                String name = type + "拓扑、密度" + alpha + "%生成的第" + i + "个迷宫";
+                expect(name, "拓扑", type, maze.getTopology().type);
+                if (new MazeSolver(maze).countStep() == -1) {
+                    fail(name, "无解");
+                }
+                expect(name, "障碍物数量", Math.round(400 * alpha / 100.0), maze.wallCount());
+            }
+        }
+    }
+
+    /**
+     * 检查生成的多层迷宫：有解，障碍物数量与指定的密度一致，且求出的路径合法
+     */
+    private void checkGenerator3D() {
+        for (int i = 0; i < mazes; i++) {
+            checked++;
+            Maze3D maze = new Maze3DGenerator(16, 12, 4, 30, 0, 0, 0, 3, 11, 15, i).generate();
+            String name = "生成的第" + i + "个多层迷宫";
+            Maze3DSolver solver = new Maze3DSolver(maze);
+            int step = solver.countStep();
+            if (step == -1) {
+                fail(name, "无解");
+                continue;
+            }
+            expect(name, "障碍物数量", Math.round(maze.size() * 0.3), maze.wallCount());
+            checkRoutes3D(maze, name, solver.solve(MAX_ROUTES), step, solver.countPaths());
+        }
+    }
+
+    /**
+     * 对一个迷宫运行所有求解方法并与基准结果比较
+     *
+     * @param maze 需要检查的迷宫（起点与终点必须可以通行）
+     * @param name 迷宫的描述，用于错误信息
+     */
+    public void check(Maze maze, String name) {
+        checked++;
+        int width = maze.width;
+        int cells = width * maze.height;
+        int start = maze.getStartPoint().row * width + maze.getStartPoint().column;
+        int dest = maze.getDestPoint().row * width + maze.getDestPoint().column;
+        Topology topology = maze.getTopology();
+        boolean[] wall = walls(maze);
+        int[] fromStart = new int[cells];
+        int[] fromDest = new int[cells];
+        long[] ways = new long[cells];
+        bfs(wall, topology, start, -1, fromStart, ways);
+        bfs(wall, topology, dest, -1, fromDest, null);
+        int step = fromStart[dest] == 0 ? -1 : fromStart[dest];
+        long paths = step == -1 ? 0 : ways[dest];
+
+        for (CellLayout.Type type : CellLayout.Type.values()) {
+            MazeSolver solver = new MazeSolver(maze.withLayout(type));
+            expect(name, type + "布局countStep", step, solver.countStep());
+            expect(name, type + "布局countPaths", paths, solver.countPaths());
+        }
+
+        MazeSolver solver = new MazeSolver(maze);
+        List<Maze.Point> sources = Collections.singletonList(maze.getDestPoint());
+        List<Maze.Point> targets = Collections.singletonList(maze.getStartPoint());
+        expect(name, "反向countStep", step, solver.countStep(sources, targets));
+        expect(name, "反向countPaths", paths, solver.countPaths(sources, targets));
+        checkRoutes(maze, name, solver.solve(SolveBudget.unlimited(), null, MAX_ROUTES), step, paths);
+
+        MazeComponents components = new MazeComponents(maze);
+        expect(name, "MazeComponents.connected", step != -1, components.connected());
+        for (int i = 0; i < cells; i++) {
+            if (!wall[i] && components.connected(i / width, i % width, dest / width, dest % width) != (fromDest[i] != 0)) {
+                fail(name, "MazeComponents在(" + i / width + "," + i % width + ")处的连通性错误");
+                break;
+            }
+        }
+
+        WeightedSolver weighted = new WeightedSolver(maze);
+        expect(name, "WeightedSolver.countCost（无代价）", (long) step, weighted.countCost());
+        expect(name, "WeightedSolver.countPaths（无代价）", paths, weighted.countPaths());
+        checkWeighted(terrain(maze, maze.contentHash()), name + "，随机代价");
+        if (topology.type != Topology.Type.FOUR) {
+            //其余的求解方法只支持四连通
+            return;
+        }
+
+        BitParallelSolver bitSolver = new BitParallelSolver(maze);
+        expect(name, "BitParallelSolver.countStep", step, bitSolver.countStep());
+        int[] field = bitSolver.distanceField();
+        for (int i = 0; i < cells; i++) {
+            if (field[i] != fromStart[i]) {
+                fail(name, "BitParallelSolver.distanceField在(" + i / width + "," + i % width + ")处为" + field[i]
+                        + "，应为" + fromStart[i]);
+                break;
+            }
+        }
+
+        DistanceField distance = new DistanceField(maze);
+        expect(name, "DistanceField.countStep", step, distance.countStep());
+        for (int i = 0; i < cells; i++) {
+            int expected = fromDest[i] == 0 ? -1 : fromDest[i];
+            int actual = distance.distance(i / width, i % width);
+            if (actual != expected) {
+                fail(name, "DistanceField在(" + i / width + "," + i % width + ")处为" + actual + "，应为" + expected);
+                break;
+            }
+        }
+
+        checkLazy(maze, name, step, paths);
+        checkArticulation(maze, name, wall, start, dest, step);
+        checkHierarchical(maze, name, step);
+        check3D(maze, name, step, paths);
+    }
+
+    /**
+     * 把迷宫转换为多层迷宫检查Maze3DSolver
+     * 只有一层时结果应与平面迷宫相同；复制为两层并在下层每个可通行的路径点放置楼梯、终点移到上层后，
+     * 最短路径多走一步，且可以在原最短路径的任意一点上楼，条数为原来的step倍
+     *
+     * @param maze  四连通的迷宫
+     * @param name  迷宫的描述
+     * @param step  基准的最短路径长度
+     * @param paths 基准的最短路径条数
+     */
+    private void check3D(Maze maze, String name, int step, long paths) {
+        Maze.Point s = maze.getStartPoint();
+        Maze.Point d = maze.getDestPoint();
+        Maze3D flat = new Maze3D(maze.width, maze.height, 1, 0, s.row, s.column, 0, d.row, d.column);
+        Maze3D stacked = new Maze3D(maze.width, maze.height, 2, 0, s.row, s.column, 1, d.row, d.column);
+        for (int r = 0; r < maze.height; r++) {
+            for (int c = 0; c < maze.width; c++) {
+                if (maze.isPassable(r, c)) {
+                    stacked.setStair(0, r, c, true);
+                } else {
+                    flat.setWall(0, r, c, true);
+                    stacked.setWall(0, r, c, true);
+                    stacked.setWall(1, r, c, true);
+                }
+            }
+        }
+
+        Maze3DSolver solver = new Maze3DSolver(flat);
+        expect(name, "单层Maze3DSolver.countStep", step, solver.countStep());
+        expect(name, "单层Maze3DSolver.countPaths", paths, solver.countPaths());
+        checkRoutes3D(flat, name + "，单层", solver.solve(MAX_ROUTES), step, paths);
+
+        solver.changeMaze(stacked);
+        int stackedStep = step == -1 ? -1 : step + 1;
+        long stackedPaths = step == -1 ? 0 : paths > Long.MAX_VALUE / step ? Long.MAX_VALUE : paths * step;
+        expect(name, "两层Maze3DSolver.countStep", stackedStep, solver.countStep());
+        if (paths < Long.MAX_VALUE) {
+            expect(name, "两层Maze3DSolver.countPaths", stackedPaths, solver.countPaths());
+        }
+        checkRoutes3D(stacked, name + "，两层", solver.solve(MAX_ROUTES), stackedStep, stackedPaths);
+    }
+
+    /**
+     * 检查多层迷宫求出的路径：数量正确、互不相同，且每条都是从起点到终点、长度为最短路径长度的相邻路径点序列
+     *
+     * @param maze   多层迷宫
+     * @param name   迷宫的描述
+     * @param routes 求出的路径
+     * @param step   最短路径长度
+     * @param paths  最短路径条数
+     */
+    private void checkRoutes3D(Maze3D maze, String name, List<int[]> routes, int step, long paths) {
+        expect(name, "Maze3DSolver.solve的路径数量", (int) Math.min(paths, MAX_ROUTES), routes.size());
+        Set<String> seen = new HashSet<>();
+        for (int k = 0; k < routes.size(); k++) {
+            int[] path = routes.get(k);
+            String error = null;
+            if (path.length != step) {
+                error = "长度为" + path.length + "，应为" + step;
+            } else if (path[0] != maze.getStart() || path[step - 1] != maze.getDest()) {
+                error = "没有连接起点与终点";
+            } else if (!seen.add(Arrays.toString(path))) {
+                error = "重复";
+            }
+            for (int i = 1; error == null && i < path.length; i++) {
+                boolean adjacent = false;
+                for (int j = 0; j < Maze3D.DEGREE; j++) {
+                    adjacent |= maze.neighbour(path[i - 1], j) == path[i];
+                }
+                if (!adjacent) {
+                    error = "在第" + i + "步不相邻";
+                }
+            }
+            if (error != null) {
+                fail(name, "Maze3DSolver.solve的第" + k + "条路径" + error);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 以朴素的Dijkstra为基准检查带通行代价的求解
+     *
+     * @param maze 带通行代价的迷宫
+     * @param name 迷宫的描述
+     */
+    private void checkWeighted(Maze maze, String name) {
+        int width = maze.width;
+        int cells = width * maze.height;
+        int start = maze.getStartPoint().row * width + maze.getStartPoint().column;
+        int dest = maze.getDestPoint().row * width + maze.getDestPoint().column;
+        long[] dist = new long[cells];
+        long[] ways = new long[cells];
+        dijkstra(maze, start, dist, ways);
+        long cost = dist[dest] == Long.MAX_VALUE ? -1 : dist[dest];
+        long paths = cost == -1 ? 0 : ways[dest];
+
+        WeightedSolver solver = new WeightedSolver(maze);
+        expect(name, "WeightedSolver.countCost", cost, solver.countCost());
+        expect(name, "WeightedSolver.countPaths", paths, solver.countPaths());
+        List<Route> routes = solver.solve(MAX_ROUTES);
+        expect(name, "WeightedSolver.solve的路径数量", (int) Math.min(paths, MAX_ROUTES), routes.size());
+        Set<String> seen = new HashSet<>();
+        for (int k = 0; k < routes.size(); k++) {
+            Route route = routes.get(k);
+            int[] path = new int[route.getStep()];
+            long sum = 0;
+            for (int i = 0; i < path.length; i++) {
+                Maze.Point p = route.getPoint(i);
+                path[i] = p.row * width + p.column;
+                sum += p.getCost();
+            }
+            String error = validatePath(maze, path, path.length);
+            if (error == null && sum != cost) {
+                error = "代价为" + sum + "，应为" + cost;
+            }
+            if (error == null && !seen.add(Arrays.toString(path))) {
+                error = "重复";
+            }
+            if (error != null) {
+                fail(name, "WeightedSolver.solve的第" + k + "条路径" + error);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 获取迷宫的一个拷贝，并给每个路径点设置1~TERRAIN_COST之间的随机通行代价
+     *
+     * @param maze 迷宫
+     * @param seed 随机种子
+     * @return 带通行代价的拷贝
+     */
+    private static Maze terrain(Maze maze, long seed) {
+        Random rand = new Random(seed);
+        Maze copy = maze.getCopy();
+        for (int r = 0; r < maze.height; r++) {
+            for (int c = 0; c < maze.width; c++) {
+                copy.setCost(r, c, 1 + rand.nextInt(TERRAIN_COST));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * 作为基准的朴素Dijkstra（二叉堆），同时统计代价最小的路径条数
+     *
+     * @param maze   带通行代价的迷宫
+     * @param source 出发点下标
+     * @param dist   输出的最小代价（无法到达为Long.MAX_VALUE）
+     * @param ways   输出的代价最小的路径条数（超过long范围时饱和）
+     */
+    private static void dijkstra(Maze maze, int source, long[] dist, long[] ways) {
+        int width = maze.width;
+        int cells = dist.length;
+        Arrays.fill(dist, Long.MAX_VALUE);
+        if (maze.getUnit(source / width, source % width).getValue() == 1) {
+            return;
+        }
+        boolean[] done = new boolean[cells];
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        dist[source] = maze.getUnit(source / width, source % width).getCost();
+        ways[source] = 1;
+        queue.add(new long[]{dist[source], source});
+        while (!queue.isEmpty()) {
+            int p = (int) queue.poll()[1];
+            if (done[p]) {
+                continue;
+            }
+            done[p] = true;
+            for (Maze.Point next : maze.getPasses(maze.getUnit(p / width, p % width))) {
+                int q = next.row * width + next.column;
+                long nd = dist[p] + next.getCost();
+                if (nd < dist[q]) {
+                    dist[q] = nd;
+                    ways[q] = ways[p];
+                    queue.add(new long[]{nd, q});
+                } else if (nd == dist[q]) {
+                    long sum = ways[q] + ways[p];
+                    ways[q] = sum < 0 ? Long.MAX_VALUE : sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把迷宫写入内存中的分块存储后按需加载，检查求解器在按需加载的迷宫上的结果
+     * 分别使用新的求解器，以及先求解过原迷宫、再切换到按需加载的迷宫的求解器（两者使用的工作区不同）
+     *
+     * @param maze  四连通的迷宫
+     * @param name  迷宫的描述
+     * @param step  基准的最短路径长度
+     * @param paths 基准的最短路径条数
+     */
+    private void checkLazy(Maze maze, String name, int step, long paths) {
+        Map<Integer, long[]> chunks = new HashMap<>();
+        TileStore store = new TileStore() {
+            @Override
+            public long[] read(int chunk, int words) {
+                long[] data = chunks.get(chunk);
+                return data == null ? null : data.clone();
+            }
+
+            @Override
+            public void write(int chunk, long[] data) {
+                chunks.put(chunk, data.clone());
+            }
+        };
+        Maze.Point s = maze.getStartPoint();
+        Maze.Point d = maze.getDestPoint();
+        Maze lazy = Maze.open(store, maze.width, maze.height, s.row, s.column, d.row, d.column, 1);
+        for (int i = 0; i < maze.height; i++) {
+            for (int j = 0; j < maze.width; j++) {
+                if (!maze.isPassable(i, j)) {
+                    lazy.setWall(i, j, true);
+                }
+            }
+        }
+
+        name += "，按需加载";
+        MazeSolver fresh = new MazeSolver(lazy);
+        checkRoutes(lazy, name, fresh.solve(SolveBudget.unlimited(), null, MAX_ROUTES), step, paths);
+        if (paths <= MAX_ROUTES) {
+            expect(name, "solve的路径数量", (int) paths, fresh.solve().size());
+        }
+
+        MazeSolver solver = new MazeSolver(maze.withLayout(CellLayout.Type.MORTON));
+        solver.solve(SolveBudget.unlimited(), null, 1);
+        solver.changeMaze(lazy);
+        expect(name, "countStep", step, solver.countStep());
+        expect(name, "countPaths", paths, solver.countPaths());
+        checkRoutes(lazy, name + "，复用求解器", solver.solve(SolveBudget.unlimited(), null, MAX_ROUTES), step, paths);
+        checkHierarchical(lazy, name, step);
+    }
+
+    /**
+     * 检查枚举出的路径：数量正确、互不相同、都是从起点到终点的最短路径
+     *
+     * @param maze   迷宫
+     * @param name   迷宫的描述
+     * @param result 求解结果
+     * @param step   最短路径长度
+     * @param paths  最短路径总数
+     */
+    private void checkRoutes(Maze maze, String name, SolveResult result, int step, long paths) {
+        expect(name, "solve的step", step, result.step);
+        expect(name, "solve的路径数量", (int) Math.min(paths, MAX_ROUTES), result.pathCount);
+        Set<String> seen = new HashSet<>();
+        for (int k = 0; k < result.getKeptPathCount(); k++) {
+            int[] path = result.getPath(k);
+            String error = validatePath(maze, path, step);
+            if (error != null) {
+                fail(name, "solve的第" + k + "条路径" + error);
+                return;
+            }
+            if (!seen.add(Arrays.toString(path))) {
+                fail(name, "solve的第" + k + "条路径重复");
+                return;
+            }
+        }
+    }
+
+    /**
+     * 用逐个封堵路径点的方法检查必经点（只检查较小的迷宫）
+     *
+     * @param maze  迷宫
+     * @param name  迷宫的描述
+     * @param wall  障碍物表
+     * @param start 起点下标
+     * @param dest  终点下标
+     * @param step  最短路径长度
+     */
+    private void checkArticulation(Maze maze, String name, boolean[] wall, int start, int dest, int step) {
+        MazeArticulation articulation = new MazeArticulation(maze);
+        expect(name, "MazeArticulation.isSolvable", step != -1, articulation.isSolvable());
+        int width = maze.width;
+        int cells = wall.length;
+        if (step == -1 || cells > 16 * 16) {
+            return;
+        }
+
+        int[] distances = new int[cells];
+        int mustPass = 0;
+        for (int i = 0; i < cells; i++) {
+            if (wall[i]) {
+                continue;
+            }
+            boolean expected = i == start || i == dest;
+            if (!expected) {
+                Arrays.fill(distances, 0);
+                bfs(wall, maze.getTopology(), start, i, distances, null);
+                expected = distances[dest] == 0;
+            }
+            mustPass += expected ? 1 : 0;
+            if (articulation.isMustPass(i / width, i % width) != expected) {
+                fail(name, "MazeArticulation在(" + i / width + "," + i % width + ")处的必经点判断错误");
+                return;
+            }
+        }
+        expect(name, "MazeArticulation.getMustPassCount", mustPass, articulation.getMustPassCount());
+    }
+
+    /**
+     * 检查分层索引：连通性与基准一致，近似路径不短于最短路径且是一条合法路径
+     *
+     * @param maze 迷宫
+     * @param name 迷宫的描述
+     * @param step 最短路径长度
+     */
+    private void checkHierarchical(Maze maze, String name, int step) {
+        HierarchicalIndex index = new HierarchicalIndex(maze);
+        Maze.Point s = maze.getStartPoint();
+        Maze.Point d = maze.getDestPoint();
+        int approx = index.distance(s.row, s.column, d.row, d.column);
+        if ((approx == -1) != (step == -1) || approx < step) {
+            fail(name, "HierarchicalIndex.distance为" + approx + "，最短路径长度为" + step);
+            return;
+        }
+        Route route = index.findRoute(s.row, s.column, d.row, d.column);
+        if (step == -1) {
+            if (route != null) {
+                fail(name, "HierarchicalIndex.findRoute在无解的迷宫中找到了路径");
+            }
+            return;
+        }
+        int[] path = new int[route == null ? 0 : route.getStep()];
+        for (int i = 0; i < path.length; i++) {
+            Maze.Point p = route.getPoint(i);
+            path[i] = p.row * maze.width + p.column;
+        }
+        String error = validatePath(maze, path, approx);
+        if (error != null) {
+            fail(name, "HierarchicalIndex.findRoute的路径" + error);
+        }
+    }
+
+    /**
+     * 检查一条路径是否从起点出发、逐步相邻、不经过障碍物与重复的路径点、在终点结束且长度正确
+     *
+     * @param maze 迷宫
+     * @param path 路径点下标（行 * 宽度 + 列）
+     * @param step 应有的路径长度
+     * @return 错误描述（合法时为null）
+     */
+    private static String validatePath(Maze maze, int[] path, int step) {
+        int width = maze.width;
+        if (path.length != step) {
+            return "长度为" + path.length + "，应为" + step;
+        }
+        Maze.Point s = maze.getStartPoint();
+        Maze.Point d = maze.getDestPoint();
+        if (path[0] != s.row * width + s.column || path[path.length - 1] != d.row * width + d.column) {
+            return "不是从起点到终点";
+        }
+        Set<Integer> visited = new HashSet<>();
+        for (int i = 0; i < path.length; i++) {
+            int r = path[i] / width;
+            int c = path[i] % width;
+            if (maze.getUnit(r, c).getValue() == 1 || !visited.add(path[i])) {
+                return "在(" + r + "," + c + ")处经过障碍物或重复的路径点";
+            }
+            if (i > 0 && maze.getTopology().distance(r, c, path[i - 1] / width, path[i - 1] % width) != 1) {
+                return "在(" + r + "," + c + ")处不相邻";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 取出迷宫的障碍物表
+     *
+     * @param maze 迷宫
+     * @return 一个数组，下标为行 * 宽度 + 列，值代表是否为障碍物
+     */
+    private static boolean[] walls(Maze maze) {
+        boolean[] wall = new boolean[maze.width * maze.height];
+        for (int r = 0; r < maze.height; r++) {
+            for (int c = 0; c < maze.width; c++) {
+                wall[r * maze.width + c] = maze.getUnit(r, c).getValue() == 1;
+            }
+        }
+        return wall;
+    }
+
+    /**
+     * 作为基准的朴素BFS，同时可以统计最短路径条数
+     *
+     * @param wall      障碍物表
+     * @param topology  迷宫拓扑
+     * @param source    出发点下标
+     * @param blocked   额外视为障碍物的下标（-1则没有）
+     * @param distances 输出的步数表（出发点为1，无法到达为0），调用前必须全部为0
+     * @param ways      输出的最短路径条数（可以为null，超过long范围时饱和）
+     */
+    private static void bfs(boolean[] wall, Topology topology, int source, int blocked, int[] distances, long[] ways) {
+        int width = topology.width;
+        int cells = wall.length;
+        int[] queue = new int[cells];
+        int head = 0;
+        int tail = 0;
+        if (wall[source]) {
+            return;
+        }
+        queue[tail++] = source;
+        distances[source] = 1;
+        if (ways != null) {
+            ways[source] = 1;
+        }
+        while (head < tail) {
+            int p = queue[head++];
+            int r = p / width;
+            int c = p % width;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (!isNeighbour(topology.type, r, dr, dc) || r + dr < 0 || r + dr >= cells / width
+                            || c + dc < 0 || c + dc >= width) {
+                        continue;
+                    }
+                    int q = p + dr * width + dc;
+                    if (wall[q] || q == blocked) {
+                        continue;
+                    }
+                    if (distances[q] == 0) {
+                        distances[q] = distances[p] + 1;
+                        queue[tail++] = q;
+                    }
+                    if (ways != null && distances[q] == distances[p] + 1) {
+                        long sum = ways[q] + ways[p];
+                        ways[q] = sum < 0 ? Long.MAX_VALUE : sum;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按拓扑的定义直接判断一个偏移是否指向相邻的路径点，不使用Topology中预先算好的表
+     *
+     * @param type 拓扑类型
+     * @param row  所在行
+     * @param dr   行偏移（-1~1）
+     * @param dc   列偏移（-1~1）
+     * @return 一个布尔值，代表是否相邻
+     */
+    private static boolean isNeighbour(Topology.Type type, int row, int dr, int dc) {
+        if (dr == 0 && dc == 0) {
+            return false;
+        }
+        switch (type) {
+            case EIGHT:
+                return true;
+            case HEX:
+                //奇数行向右错开半格，上下两行的斜向邻居在奇数行偏右、偶数行偏左
+                return dr == 0 || dc == 0 || dc == ((row & 1) == 1 ? 1 : -1);
+            default:
+                return dr == 0 || dc == 0;
+        }
+    }
+
+    /**
+     * 比较一个结果与基准结果，不一致时记录错误
+     *
+     * @param name     迷宫的描述
+     * @param what     比较的项目
+     * @param expected 基准结果
+     * @param actual   实际结果
+     */
+    private void expect(String name, String what, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            fail(name, what + "为" + actual + "，应为" + expected);
+        }
+    }
+
+    /**
+     * 记录一处错误，只保留前MAX_REPORTED条错误信息
+     *
+     * @param name    迷宫的描述
+     * @param message 错误信息
+     */
+    private void fail(String name, String message) {
+        failureCount++;
+        if (failures.size() < MAX_REPORTED) {
+            failures.add(name + "：" + message);
+        }
+    }
+
+    /**
+     * 获取已记录的错误信息（最多MAX_REPORTED条）
+     *
+     * @return 错误信息列表
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * 获取已对拍的迷宫数量
+     *
+     * @return 迷宫数量
+     */
+    public int getCheckedCount() {
+        return checked;
+    }
+
+    /**
+     * 在固定的迷宫上测量各求解方法的吞吐量
+     *
+     * @param millis 每一项测量的毫秒数（另有同样长度的预热）
+     * @return 测试项名称到吞吐量（次/秒）的映射
+     */
+    public static Map<String, Double> benchmark(long millis) {
+        Maze maze = benchmarkMaze();
+        MazeSolver solver = new MazeSolver(maze);
+        MazeSolver mortonSolver = new MazeSolver(maze.withLayout(CellLayout.Type.MORTON));
+        BitParallelSolver bitSolver = new BitParallelSolver(maze);
+        WeightedSolver weighted = new WeightedSolver(terrain(maze, BENCHMARK_SIZE));
+        MazeGenerator generator = new MazeGenerator(20, 20, 30, 0, 0, 19, 19, 1);
+
+        Map<String, Double> results = new LinkedHashMap<>();
+        results.put("MazeSolver.countStep", measure(millis, () -> solver.countStep()));
+        results.put("MazeSolver.countStep.morton", measure(millis, () -> mortonSolver.countStep()));
+        results.put("MazeSolver.countPaths", measure(millis, () -> solver.countPaths()));
+        results.put("MazeSolver.solve", measure(millis,
+                () -> solver.solve(SolveBudget.unlimited(), null, MAX_ROUTES).pathCount));
+        results.put("BitParallelSolver.countStep", measure(millis, () -> bitSolver.countStep()));
+        results.put("DistanceField.rebuild", measure(millis, () -> new DistanceField(maze).countStep()));
+        results.put("MazeComponents", measure(millis, () -> new MazeComponents(maze).getComponentCount()));
+        results.put("MazeArticulation", measure(millis, () -> new MazeArticulation(maze).getMustPassCount()));
+        results.put("HierarchicalIndex", measure(millis, () -> new HierarchicalIndex(maze).getNodeCount()));
+        results.put("WeightedSolver.countCost", measure(millis, () -> weighted.countCost()));
+        results.put("MazeGenerator.generate", measure(millis, () -> generator.generate().width));
+        return results;
+    }
+
+    /**
+     * 取第一个有解的随机迷宫作为测量用的迷宫，避免求解在起点附近就提前结束
+     *
+     * @return 测量用的迷宫
+     */
+    private static Maze benchmarkMaze() {
+        for (long seed = BENCHMARK_SIZE; ; seed++) {
+            Maze maze = MazeDebugger.randomMaze(BENCHMARK_SIZE, BENCHMARK_ALPHA, seed);
+            if (new MazeComponents(maze).connected()) {
+                return maze;
+            }
+        }
+    }
+
+    /**
+     * 先预热，再在指定的时间内反复运行一项操作，求每秒运行的次数
+     *
+     * @param millis    测量的毫秒数
+     * @param operation 被测量的操作，返回值仅用于防止被优化掉
+     * @return 吞吐量（次/秒）
+     */
+    private static double measure(long millis, LongSupplier operation) {
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {
+            long count = 0;
+            long time = System.nanoTime();
+            long deadline = time + millis * 1_000_000;
+            long now;
+            do {
+                sink += operation.getAsLong();
+                count++;
+                now = System.nanoTime();
+            } while (now - deadline < 0);
+            if (round == 1) {
+                //sink参与计算结果，避免操作被当作无用代码消除
+                return count * 1e9 / (now - time) + (sink == Long.MIN_VALUE ? 1 : 0);
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * 比较本次结果与基线，找出吞吐量下降超过阈值的测试项（基线中没有的测试项不参与比较）
+     *
+     * @param current   本次的吞吐量
+     * @param baseline  基线
+     * @param threshold 允许下降的百分比
+     * @return 回归的描述列表
+     */
+    public static List<String> compareBaseline(Map<String, Double> current, Properties baseline, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> e : current.entrySet()) {
+            String value = baseline.getProperty(e.getKey());
+            if (value == null) {
+                continue;
+            }
+            double base = Double.parseDouble(value);
+            if (e.getValue() < base * (1 - threshold / 100)) {
+                regressions.add(String.format("%s：%.1f次/秒，基线%.1f次/秒，下降%.1f%%", e.getKey(), e.getValue(), base,
+                        (1 - e.getValue() / base) * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * 读取基线文件
+     *
+     * @param file 基线文件
+     * @return 基线
+     * @throws IOException 文件读取失败
+     */
+    public static Properties loadBaseline(File file) throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            baseline.load(in);
+        }
+        return baseline;
+    }
+
+    /**
+     * 把本次结果写入基线文件
+     *
+     * @param results 本次的吞吐量
+     * @param file    基线文件
+     * @throws IOException 文件写入失败
+     */
+    public static void saveBaseline(Map<String, Double> results, File file) throws IOException {
+        Properties baseline = new Properties();
+        for (Map.Entry<String, Double> e : results.entrySet()) {
+            baseline.setProperty(e.getKey(), Double.toString(e.getValue()));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            baseline.store(out, "MazeRegression throughput baseline (ops/s)");
+        }
+    }
+}
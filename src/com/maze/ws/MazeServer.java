@@ -0,0 +1,383 @@
+package com.maze.ws;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地迷宫求解服务
+ * 基于JDK自带的HttpServer，只监听回环地址；运行在支持虚拟线程的JDK上时每个请求使用一个虚拟线程，否则使用缓存线程池
+ * POST /solve：请求体为迷宫二进制格式（见FileHelper），边读边写入迷宫，不缓存整个请求体；
+ * 响应为两行文本：第一行依次为最短路径长度、最短路径总数、是否在预算内完成，第二行为第一条路径的路径点下标（行 * 宽度 + 列）
+ * GET /stats：返回服务端的请求数、被拒绝的请求数、批次数与耗时分布
+ * 路径点不超过SMALL_CELLS的小迷宫被放入共享队列，由固定数量的工作线程成批取出，每个工作线程复用自己的求解工作区；
+ * 大迷宫交给固定大小的线程池求解，池中每个线程同样复用自己的求解器，同时求解的大迷宫数不超过线程池的大小；
+ * 声明的路径点数超过maxCells的请求在读入文件头后、分配迷宫之前即被拒绝（413）
+ *
+ * @author Wshine
+ */
+public class MazeServer {
+    /**
+     * 成批求解的迷宫的最大路径点数
+     */
+    public static final int SMALL_CELLS = 64 * 64;
+    /**
+     * 默认接受的迷宫的最大路径点数
+     */
+    public static final long DEFAULT_MAX_CELLS = 4096L * 4096;
+
+    public final int workers;
+    public final int batchSize;
+    public final long budgetMillis;
+    public final int largeWorkers;
+    public final long maxCells;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService largeExecutor;
+    private final ThreadLocal<MazeSolver> largeSolver = ThreadLocal.withInitial(() -> new MazeSolver(null));
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final boolean virtual;
+    private volatile boolean running;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batched = new AtomicLong();
+    private final Histogram latency = new Histogram();
+
+    /**
+     * 一个等待成批求解的迷宫
+     */
+    private static final class Job {
+        final Maze maze;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Job(Maze maze) {
+            this.maze = maze;
+        }
+    }
+
+    /**
+     * 构造方法，创建但不启动服务，大迷宫的线程数与成批求解的工作线程数相同，最大路径点数为DEFAULT_MAX_CELLS
+     *
+     * @param port         监听的端口（0则由系统分配）
+     * @param workers      成批求解的工作线程数
+     * @param batchSize    每批最多求解的迷宫数
+     * @param budgetMillis 每个迷宫的求解预算（毫秒，0为不限制）
+     * @throws IOException              端口无法绑定时抛出
+     * @throws IllegalArgumentException 参数不合法时抛出
+     */
+    public MazeServer(int port, int workers, int batchSize, long budgetMillis) throws IOException {
+        this(port, workers, batchSize, budgetMillis, workers, DEFAULT_MAX_CELLS);
+    }
+
+    /**
+     * 构造方法，创建但不启动服务
+     * 每个求解大迷宫的线程保留的工作区随它求解过的最大迷宫增长，因此常驻内存约为 largeWorkers * maxCells 个路径点的工作区
+     *
+     * @param port         监听的端口（0则由系统分配）
+     * @param workers      成批求解的工作线程数
+     * @param batchSize    每批最多求解的迷宫数
+     * @param budgetMillis 每个迷宫的求解预算（毫秒，0为不限制）
+     * @param largeWorkers 求解大迷宫的线程数
+     * @param maxCells     接受的迷宫的最大路径点数
+     * @throws IOException              端口无法绑定时抛出
+     * @throws IllegalArgumentException 参数不合法时抛出
+     */
+    public MazeServer(int port, int workers, int batchSize, long budgetMillis, int largeWorkers, long maxCells)
+            throws IOException {
+        if (workers < 1 || batchSize < 1 || largeWorkers < 1) {
+            throw new IllegalArgumentException("工作线程数与批大小必须为正整数");
+        }
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("预算时间不能为负数");
+        }
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("最大路径点数必须为正整数");
+        }
+
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.budgetMillis = budgetMillis;
+        this.largeWorkers = largeWorkers;
+        this.maxCells = maxCells;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        ExecutorService executor = newVirtualThreadExecutor();
+        this.virtual = executor != null;
+        this.requestExecutor = executor != null ? executor : Executors.newCachedThreadPool();
+        server.setExecutor(requestExecutor);
+        this.largeExecutor = Executors.newFixedThreadPool(largeWorkers, r -> {
+            Thread thread = new Thread(r, "maze-server-large");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * 通过反射创建每个任务一个虚拟线程的线程池（需要JDK 21及以上）
+     *
+     * @return 线程池（不支持虚拟线程时为null）
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        MazeServer server = new MazeServer(port, workers, 32, 1000);
+        server.start();
+        System.out.println("迷宫求解服务已启动：http://localhost:" + server.getPort() + "/solve"
+                + (server.isVirtual() ? "（虚拟线程）" : "（线程池）"));
+    }
+
+    /**
+     * 启动服务与工作线程
+     */
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::work, "maze-server-worker-" + i);
+            thread.setDaemon(true);
+            workerThreads.add(thread);
+            thread.start();
+        }
+        server.start();
+    }
+
+    /**
+     * 停止服务，等待最多指定的秒数让正在处理的请求完成
+     * 队列中尚未被求解的小迷宫任务以异常结束，等待它们的请求线程不会永远阻塞
+     *
+     * @param delaySeconds 等待的秒数
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        running = false;
+        for (Thread thread : workerThreads) {
+            thread.interrupt();
+        }
+        requestExecutor.shutdown();
+        largeExecutor.shutdownNow();
+
+        //工作线程已经停止，队列中剩余的任务不会再被求解
+        List<Job> left = new ArrayList<>();
+        jobs.drainTo(left);
+        for (Job job : left) {
+            job.result.completeExceptionally(new IllegalStateException("服务已停止"));
+        }
+    }
+
+    /**
+     * 获取实际监听的端口
+     *
+     * @return 端口号
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 判断请求是否运行在虚拟线程上
+     *
+     * @return 一个布尔值，代表是否使用虚拟线程
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 工作线程的主循环：阻塞取出一个任务，再顺带取出队列中已有的任务凑成一批，用同一个求解器依次求解
+     * 单个任务抛出的任何异常或Error（如内存不足、栈溢出）都只使该任务失败，工作线程继续运行；
+     * 出现Error后求解器的状态不可信，换用新的求解器
+     */
+    private void work() {
+        MazeSolver solver = new MazeSolver(null);
+        List<Job> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(jobs.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            jobs.drainTo(batch, batchSize - 1);
+            batches.incrementAndGet();
+            batched.addAndGet(batch.size());
+            for (Job job : batch) {
+                try {
+                    job.result.complete(solve(solver, job.maze));
+                } catch (RuntimeException e) {
+                    job.result.completeExceptionally(e);
+                } catch (Throwable e) {
+                    job.result.completeExceptionally(e);
+                    solver = new MazeSolver(null);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 在预算内求解迷宫并生成响应文本
+     *
+     * @param solver 使用的求解器
+     * @param maze   需要求解的迷宫
+     * @return 响应文本
+     */
+    private String solve(MazeSolver solver, Maze maze) {
+        solver.changeMaze(maze);
+        SolveBudget budget = budgetMillis == 0 ? SolveBudget.unlimited() : SolveBudget.ofMillis(budgetMillis);
+        SolveResult result = solver.solve(budget, null, 1);
+
+        StringBuilder s = new StringBuilder();
+        s.append(result.step).append(' ').append(result.isComplete() ? solver.countPaths() : result.pathCount)
+                .append(' ').append(result.isComplete()).append('\n');
+        if (result.getKeptPathCount() > 0) {
+            int[] path = result.getPath(0);
+            for (int i = 0; i < path.length; i++) {
+                s.append(i == 0 ? "" : " ").append(path[i]);
+            }
+        }
+        return s.append('\n').toString();
+    }
+
+    /**
+     * 处理求解请求
+     *
+     * @param exchange HTTP请求
+     * @throws IOException 响应写出失败
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        long time = System.nanoTime();
+        requests.incrementAndGet();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "只支持POST\n");
+                return;
+            }
+
+            Maze maze;
+            try (InputStream body = exchange.getRequestBody()) {
+                BufferedInputStream buffered = new BufferedInputStream(body, 1 << 16);
+                DataInputStream in = new DataInputStream(buffered);
+
+                //先只看文件头中声明的宽高，超出限制的请求不分配迷宫
+                buffered.mark(FileHelper.BINARY_HEADER);
+                in.readInt();
+                in.readInt();
+                long cells = (long) in.readInt() * in.readInt();
+                if (cells > maxCells) {
+                    rejected.incrementAndGet();
+                    respond(exchange, 413, "迷宫过大：路径点数" + cells + "超过了上限" + maxCells + "\n");
+                    return;
+                }
+                buffered.reset();
+                maze = FileHelper.readBinary(in, "请求体");
+            } catch (IOException | IllegalArgumentException e) {
+                errors.incrementAndGet();
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            String text;
+            try {
+                if ((long) maze.width * maze.height <= SMALL_CELLS) {
+                    Job job = new Job(maze);
+                    jobs.add(job);
+                    if (!running && jobs.remove(job)) {
+                        //服务在加入队列前后停止，stop()可能已经清空过队列
+                        job.result.completeExceptionally(new IllegalStateException("服务已停止"));
+                    }
+                    text = job.result.get();
+                } else {
+                    Maze large = maze;
+                    text = largeExecutor.submit(() -> solve(largeSolver.get(), large)).get();
+                }
+            } catch (InterruptedException | RejectedExecutionException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, 503, "服务正在停止\n");
+                return;
+            } catch (ExecutionException e) {
+                errors.incrementAndGet();
+                respond(exchange, 500, e.getCause() + "\n");
+                return;
+            }
+            respond(exchange, 200, text);
+        } finally {
+            latency.record(System.nanoTime() - time);
+            exchange.close();
+        }
+    }
+
+    /**
+     * 处理统计请求
+     *
+     * @param exchange HTTP请求
+     * @throws IOException 响应写出失败
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, report());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 写出文本响应
+     *
+     * @param exchange HTTP请求
+     * @param status   状态码
+     * @param text     响应文本
+     * @throws IOException 响应写出失败
+     */
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 生成服务端的统计信息
+     *
+     * @return 统计信息的字符串
+     */
+    public String report() {
+        long b = batches.get();
+        return String.format("请求%d，失败%d，拒绝%d，批次%d，平均批大小%.2f%n", requests.get(), errors.get(), rejected.get(), b,
+                b == 0 ? 0 : (double) batched.get() / b)
+                + String.format("服务端耗时：p50 %.3fms，p99 %.3fms，最大 %.3fms%n",
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6);
+    }
+}
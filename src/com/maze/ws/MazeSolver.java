@@ -4,15 +4,52 @@ import java.util.*;
 
 /**
  * 迷宫求解类
+ * 求解过程只读取迷宫，不修改迷宫的任何状态；求解器对象本身（工作区）不是线程安全的，
+ * 多个线程可以各自创建求解器，同时求解同一个迷宫（建议先用Maze.freeze()得到不可变快照）
+ * 最短路径可能多到无法枚举完，需要限制耗时的调用者应使用带SolveBudget的solve()
  *
  * @author Wshine
  */
 public class MazeSolver {
     private Maze maze;
-    private final List<Route> routes = new ArrayList<>();
+    private final SolverWorkspace arrays;
+    private PagedWorkspace paged;
+    private SolverWorkspace workspace;
+    private MazeMetrics metrics = MazeMetrics.NONE;
+    private int expanded;
+    private int peakQueue;
+    private SolveBudget budget;
+    private SolveProgress progress;
+    private boolean interrupted;
+
+    private static final int ABORTED = -2;
+    private static final int CHECK_MASK = 1023;
 
     public MazeSolver(Maze maze) {
+        this(maze, new SolverWorkspace());
+    }
+
+    /**
+     * 构造方法，使用指定的工作区进行求解
+     * 多个在同一线程中使用的求解器可以共享同一个工作区；
+     * 求解按需加载的迷宫时改用求解器自己的分页工作区，堆内存只与BFS访问到的区域成正比
+     *
+     * @param maze      待解决的迷宫
+     * @param workspace 求解使用的工作区
+     */
+    public MazeSolver(Maze maze, SolverWorkspace workspace) {
         this.maze = maze;
+        this.arrays = workspace;
+        this.workspace = workspace;
+    }
+
+    /**
+     * 设置性能指标的接收者
+     *
+     * @param metrics 指标接收者（null则不记录）
+     */
+    public void setMetrics(MazeMetrics metrics) {
+        this.metrics = metrics == null ? MazeMetrics.NONE : metrics;
     }
 
     /**
@@ -24,6 +61,15 @@ public class MazeSolver {
         this.maze = maze;
     }
 
+    /**
+     * 获取待解决的迷宫
+     *
+     * @return 当前的迷宫
+     */
+    Maze getMaze() {
+        return maze;
+    }
+
     public static void main(String[] args) {
         //MazeDebugger.randomMazeSolve(35);
 
@@ -53,63 +99,142 @@ public class MazeSolver {
      * @return 一个路径列表，包含所有可行的最短路径
      */
     public List<Route> solve() {
-        routes.clear();
+        return solve(Collections.singletonList(maze.getStartPoint()), Collections.singletonList(maze.getDestPoint()));
+    }
 
-        int[][] minStep = new int[maze.height][maze.width];
-        Maze.Point start = maze.getStartPoint();
+    /**
+     * 多起点、多终点的求解方法
+     * 所有起点同时入队进行一次BFS，到达最近的终点所在的一层后停止，再从这一层的所有终点向前记录路径
+     * 位于障碍物上的起点不会入队，位于障碍物上的终点无法到达；所有起点都在障碍物上时返回空列表
+     *
+     * @param sources 起点集合
+     * @param targets 终点集合
+     * @return 一个路径列表，包含从任一起点到最近的终点的所有最短路径
+     * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
+     */
+    public List<Route> solve(Collection<Maze.Point> sources, Collection<Maze.Point> targets) {
+        List<Route> routes = new ArrayList<>();
+        run(sources, targets, routes, false, Integer.MAX_VALUE);
+        return routes;
+    }
 
-        //第一部分：求出起点到每个点的最短路径长度
-        Queue<Maze.Point> queue = new LinkedList<>();
-        queue.add(start);
-        minStep[start.row][start.column] = 1;
-        while (!queue.isEmpty()) {
-            Maze.Point point = queue.poll();
-            if (maze.isDestPoint(point)) {
-                //特判，若已经到了终点则没必要继续让终点入队
-                continue;
-            }
+    /**
+     * 带预算的求解方法，不会因为最短路径过多而无限期地占用调用线程
+     * 在BFS的每一层之间与路径回溯过程中定期检查预算并报告进度，预算用完后返回已经得到的部分结果；
+     * 路径回溯按深度优先的顺序进行，以便尽早得到完整的路径，因此路径的顺序与solve()不同
+     *
+     * @param budget   求解预算
+     * @param progress 进度回调（null则不报告）
+     * @return 求解结果（保存所有已经得到的路径，预算用完时isComplete()为false）
+     * @throws IllegalArgumentException 预算为null时抛出
+     */
+    public SolveResult solve(SolveBudget budget, SolveProgress progress) {
+        return solve(budget, progress, Integer.MAX_VALUE);
+    }
 
-            /*
-             * 找到这个点周围的可通行路径点，如果路径点没有被走过，则记录步数，
-             * 该步数即为从起点到这个点的最短路径长度
-             */
-            int cache = minStep[point.row][point.column];
-            List<Maze.Point> passes = maze.getPasses(point);
-            for (Maze.Point pass : passes) {
-                if (minStep[pass.row][pass.column] == 0) {
-                    minStep[pass.row][pass.column] = cache + 1;
-                    queue.add(pass);
-                }
-            }
+    /**
+     * 带预算的求解方法，得到指定条数的路径后即停止回溯
+     * 只需要一条或几条路径时，回溯的耗时与最短路径长度成正比，而与最短路径的总数无关
+     *
+     * @param budget   求解预算
+     * @param progress 进度回调（null则不报告）
+     * @param maxPaths 最多得到的路径条数
+     * @return 求解结果（pathCount为实际得到的路径条数，总条数可以用countPaths()求出）
+     * @throws IllegalArgumentException 预算为null或路径条数不为正数时抛出
+     */
+    public SolveResult solve(SolveBudget budget, SolveProgress progress, int maxPaths) {
+        if (maxPaths < 1) {
+            throw new IllegalArgumentException("路径条数必须为正整数");
+        }
+        if (budget == null) {
+            throw new IllegalArgumentException("求解预算不能为null");
         }
 
-        //第二部分：从终点根据最短路径长度向前记录所有路径
-        Maze.Point dest = maze.getDestPoint();
-        int step;
-        Queue<Route> routeQueue = new LinkedList<>();
+        this.budget = budget;
+        this.progress = progress;
+        this.interrupted = false;
+        try {
+            List<Route> routes = new ArrayList<>();
+            int found = run(Collections.singletonList(maze.getStartPoint()), Collections.singletonList(maze.getDestPoint()),
+                    routes, true, maxPaths);
+            return new SolveResult(maze, Math.max(found, -1), routes, Integer.MAX_VALUE, !interrupted);
+        } finally {
+            this.budget = null;
+            this.progress = null;
+        }
+    }
 
-        Route route = new Route(maze);
-        route.addPoint(dest);
-        routeQueue.add(route);
+    /**
+     * 求解的主体：BFS后从最近的一层终点向前记录路径，同时上报性能指标与JFR事件
+     *
+     * @param sources 起点集合
+     * @param targets 终点集合
+     * @param routes  存放结果的路径列表
+     * @param lifo    是否按深度优先的顺序回溯（否则按广度优先）
+     * @param limit   最多记录的路径条数
+     * @return 最近的终点的步数（-1则无法到达任何终点，ABORTED则BFS因预算用完而中止）
+     * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
+     */
+    private int run(Collection<Maze.Point> sources, Collection<Maze.Point> targets, List<Route> routes, boolean lifo,
+                    int limit) {
+        //只有设置了指标接收者时才计时
+        boolean timing = metrics != MazeMetrics.NONE;
+        long time = timing ? System.nanoTime() : 0;
+        MazeEvents.SolveEvent event = new MazeEvents.SolveEvent();
+        event.begin();
+        MazeEvents.SolvePhaseEvent phase = new MazeEvents.SolvePhaseEvent();
+        phase.begin();
+
+        //第一部分：求出起点到每个点的最短路径长度，到达最近的终点所在的一层后停止
+        CellLayout layout = maze.getLayout().dense();
+        int found = search(sources, targets, false);
+        //search()按迷宫是否按需加载选择工作区，必须在其返回后再读取
+        SolverWorkspace minStep = workspace;
+
+        long bfsTime = 0;
+        if (timing) {
+            long now = System.nanoTime();
+            bfsTime = now - time;
+            time = now;
+        }
+        commitPhase(phase, "BFS");
+        phase = new MazeEvents.SolvePhaseEvent();
+        phase.begin();
+
+        //第二部分：从最近的一层终点根据最短路径长度向前记录所有路径
+        int step;
+        int polls = 0;
+        Deque<Route> routeQueue = new LinkedList<>();
+        Set<Maze.Point> seeded = new HashSet<>();
+        for (Maze.Point target : targets) {
+            if (found > 0 && minStep.get((int) layout.index(target.row, target.column)) == found && seeded.add(target)) {
+                Route route = new Route(maze);
+                route.addPoint(target);
+                routeQueue.add(route);
+            }
+        }
 
-        while (!routeQueue.isEmpty()) {
-            route = routeQueue.poll();
+        while (!routeQueue.isEmpty() && routes.size() < limit) {
+            if (budget != null && (++polls & CHECK_MASK) == 0 && exhausted(routes.size())) {
+                break;
+            }
+            Route route = lifo ? routeQueue.pollLast() : routeQueue.poll();
             Maze.Point point = route.getTop();
 
             /*
              * step确定前一个点应该显示的步数（当前点的步数-1）
              * 使用step变量中转提升代码可读性
              */
-            step = minStep[point.row][point.column] - 1;
-            if (maze.isStartPoint(point)) {
+            step = minStep.get((int) layout.index(point.row, point.column)) - 1;
+            if (step == 0) {
                 //特判，若路径已经到达起点，则先将路径倒转，再加入到结果列表
                 route.reverse();
-                this.routes.add(route);
+                routes.add(route);
                 continue;
             }
 
             for (Maze.Point p : maze.getPasses(point)) {
-                if (minStep[p.row][p.column] == step) {
+                if (minStep.get((int) layout.index(p.row, p.column)) == step) {
                     Route cache = route.getCopy();
                     cache.addPoint(p);
                     routeQueue.add(cache);
@@ -117,35 +242,272 @@ public class MazeSolver {
             }
         }
 
-        return this.routes;
+        if (timing) {
+            metrics.onSolve(maze, expanded, peakQueue, routes.size(), bfsTime, System.nanoTime() - time);
+        }
+        commitPhase(phase, "Recover");
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = maze.width;
+            event.height = maze.height;
+            event.alpha = maze.countAlpha();
+            event.expanded = expanded;
+            event.step = Math.max(found, 0);
+            event.paths = routes.size();
+            event.commit();
+        }
+        if (progress != null) {
+            progress.onProgress(expanded, routes.size());
+        }
+        return found;
+    }
+
+    /**
+     * 报告进度并检查预算
+     *
+     * @param paths 已经得到的完整路径数量
+     * @return 一个布尔值，代表预算是否已经用完（用完时记录求解被中断）
+     */
+    private boolean exhausted(long paths) {
+        if (progress != null) {
+            progress.onProgress(expanded, paths);
+        }
+        if (budget.isExhausted()) {
+            interrupted = true;
+        }
+        return interrupted;
+    }
+
+    /**
+     * 多起点、多终点的BFS，结果留在工作区中
+     * 起点的步数为1，障碍物上的起点被忽略；终点本身不再向外扩展，到达最近的终点所在的一层后停止
+     * 工作区按不含对齐空位的布局排列，只有判断是否可通行时才换算为位存储的下标
+     * 只有一个终点时出队的路径点直接与其下标比较，多个终点时用位集合标记，出队时不需要装箱
+     *
+     * @param sources  起点集合
+     * @param targets  终点集合
+     * @param counting 是否同时统计到达每个路径点的最短路径条数
+     * @return 最近的终点的步数（-1则无法到达任何终点）
+     * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
+     */
+    private int search(Collection<Maze.Point> sources, Collection<Maze.Point> targets, boolean counting) {
+        int width = maze.width;
+        int height = maze.height;
+        if (maze.isLazy()) {
+            if (paged == null) {
+                paged = new PagedWorkspace();
+            }
+            workspace = paged;
+        } else {
+            workspace = arrays;
+        }
+        CellLayout cells = maze.getLayout();
+        CellLayout layout = cells.dense();
+        boolean aligned = cells == layout;
+        Topology topology = maze.getTopology();
+        boolean four = topology.type == Topology.Type.FOUR;
+        workspace.prepare(layout.span());
+        if (counting) {
+            workspace.enableCounting();
+        }
+        expanded = 0;
+        peakQueue = 1;
+
+        int onlyTarget = -1;
+        BitSet targetSet = null;
+        if (targets.size() == 1) {
+            onlyTarget = indexOf(targets.iterator().next());
+        } else {
+            targetSet = new BitSet();
+            for (Maze.Point target : targets) {
+                targetSet.set(indexOf(target));
+            }
+        }
+        for (Maze.Point source : sources) {
+            int index = indexOf(source);
+            if (!workspace.isSet(index) && maze.isPassable(source.row, source.column)) {
+                workspace.set(index, 1);
+                if (counting) {
+                    workspace.addCount(index, 1);
+                }
+                workspace.offer(index);
+            }
+        }
+
+        int found = -1;
+        int layer = 0;
+        while (!workspace.isQueueEmpty()) {
+            int index = workspace.poll();
+            int step = workspace.get(index);
+            if (found != -1 && step >= found) {
+                //最近的终点所在的一层已经全部记录，不需要继续扩展
+                break;
+            }
+            if (budget != null && step != layer) {
+                //每进入新的一层检查一次预算
+                layer = step;
+                if (exhausted(0)) {
+                    return ABORTED;
+                }
+            }
+            if (targetSet == null ? index == onlyTarget : targetSet.get(index)) {
+                //特判，若已经到了终点则没必要继续让终点入队
+                found = step;
+                continue;
+            }
+            expanded++;
+
+            /*
+             * 找到这个点周围的可通行路径点，如果路径点没有被走过，则记录步数，
+             * 该步数即为从起点到这个点的最短路径长度
+             */
+            int row = layout.row(index);
+            int col = layout.col(index);
+            long bit = aligned ? index : cells.index(row, col);
+            long ways = counting ? workspace.getCount(index) : 0;
+            if (!four) {
+                //其它拓扑按预先算好的方向表与边界掩码扩展
+                int mask = topology.mask(row, col);
+                for (int k = 0; k < topology.degree(); k++) {
+                    if ((mask & 1 << k) != 0) {
+                        int r = row + topology.rowOffset(row, k);
+                        int c = col + topology.colOffset(row, k);
+                        visit(cells.index(r, c), (int) layout.index(r, c), step + 1, ways);
+                    }
+                }
+            } else {
+                if (row + 1 < height) {
+                    visit(cells.down(bit), (int) layout.down(index), step + 1, ways);
+                }
+                if (col + 1 < width) {
+                    visit(cells.right(bit), (int) layout.right(index), step + 1, ways);
+                }
+                if (row > 0) {
+                    visit(cells.up(bit), (int) layout.up(index), step + 1, ways);
+                }
+                if (col > 0) {
+                    visit(cells.left(bit), (int) layout.left(index), step + 1, ways);
+                }
+            }
+            peakQueue = Math.max(peakQueue, workspace.queueSize());
+        }
+        return found;
+    }
+
+    /**
+     * 求路径点在工作区中的下标（不含对齐空位的布局中的下标）
+     *
+     * @param p 路径点
+     * @return 该路径点的下标
+     * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
+     */
+    private int indexOf(Maze.Point p) {
+        if (p.maze != maze) {
+            throw new IllegalArgumentException("路径点不属于该迷宫");
+        }
+        return (int) maze.getLayout().dense().index(p.row, p.column);
+    }
+
+    /**
+     * 结束并提交一个求解阶段的JFR事件
+     *
+     * @param phase 阶段事件
+     * @param name  阶段名称
+     */
+    private void commitPhase(MazeEvents.SolvePhaseEvent phase, String name) {
+        phase.end();
+        if (phase.shouldCommit()) {
+            phase.phase = name;
+            phase.width = maze.width;
+            phase.height = maze.height;
+            phase.commit();
+        }
+    }
+
+    /**
+     * BFS中访问一个相邻的路径点：若可通行且未被走过，则记录步数并入队
+     * 统计路径条数时，同一层的每个前驱都把自己的条数累加到该点上
+     *
+     * @param bit   相邻点在位存储中的下标
+     * @param index 相邻点在工作区中的下标
+     * @param step  到达相邻点的步数
+     * @param ways  到达前驱的最短路径条数（不统计时为0）
+     */
+    private void visit(long bit, int index, int step, long ways) {
+        if (!workspace.isSet(index)) {
+            if (!maze.isPassableAt(bit)) {
+                return;
+            }
+            workspace.set(index, step);
+            workspace.offer(index);
+        } else if (workspace.get(index) != step) {
+            return;
+        }
+        if (ways != 0) {
+            workspace.addCount(index, ways);
+        }
     }
 
     /**
      * 求目前迷宫的最短路径长度
+     * 只使用求解器的工作区，不会修改迷宫中路径点的颜色
+     * 与最初的实现不同，起点或终点位于障碍物上时视为无解
      *
-     * @return 当前迷宫的最短路径长度（-1则迷宫无解）
+     * @return 当前迷宫的最短路径长度（-1则迷宫无解，或起点、终点位于障碍物上）
      */
     public int countStep() {
-        Queue<Maze.Point> points = new LinkedList<>();
-        boolean[][] visited = new boolean[maze.height][maze.width];
-        maze.initColor(1);
-
-        points.add(maze.getStartPoint());
-        while (!points.isEmpty()) {
-            Maze.Point p = points.poll();
-            if (maze.isDestPoint(p.row, p.column)) {
-                return p.color;
-            }
+        return countStep(Collections.singletonList(maze.getStartPoint()), Collections.singletonList(maze.getDestPoint()));
+    }
+
+    /**
+     * 求从任一起点到最近的终点的最短路径长度
+     *
+     * @param sources 起点集合
+     * @param targets 终点集合
+     * @return 最短路径长度（-1则无法到达任何终点，位于障碍物上的起点被忽略）
+     * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
+     */
+    public int countStep(Collection<Maze.Point> sources, Collection<Maze.Point> targets) {
+        return search(sources, targets, false);
+    }
+
+    /**
+     * 求目前迷宫的最短路径条数，不需要逐条记录路径
+     *
+     * @return 最短路径的条数（无解为0，超出long的范围时为Long.MAX_VALUE）
+     */
+    public long countPaths() {
+        return countPaths(Collections.singletonList(maze.getStartPoint()), Collections.singletonList(maze.getDestPoint()));
+    }
+
+    /**
+     * 求从任一起点到最近的一层终点的最短路径总条数
+     * 在BFS的同时按层累加到达每个路径点的条数，时间复杂度与一次BFS相同
+     *
+     * @param sources 起点集合
+     * @param targets 终点集合
+     * @return 最短路径的总条数（无法到达为0，超出long的范围时为Long.MAX_VALUE）
+     * @throws IllegalArgumentException 路径点不属于该迷宫时抛出
+     */
+    public long countPaths(Collection<Maze.Point> sources, Collection<Maze.Point> targets) {
+        int found = search(sources, targets, true);
+        if (found == -1) {
+            return 0;
+        }
 
-            for (Maze.Point pp : maze.getPasses(p)) {
-                if (!visited[pp.row][pp.column]) {
-                    pp.color = p.color + 1;
-                    points.add(pp);
-                    visited[pp.row][pp.column] = true;
+        long total = 0;
+        BitSet counted = new BitSet();
+        for (Maze.Point target : targets) {
+            int index = indexOf(target);
+            if (workspace.get(index) == found && !counted.get(index)) {
+                counted.set(index);
+                total += workspace.getCount(index);
+                if (total < 0) {
+                    return Long.MAX_VALUE;
                 }
             }
         }
-        return -1;
+        return total;
     }
 
 
@@ -157,7 +519,7 @@ public class MazeSolver {
      */
     @Deprecated
     public List<Route> solveHistory() {
-        routes.clear();
+        List<Route> routes = new ArrayList<>();
 
         int step = countStep();
         if (step == -1) {
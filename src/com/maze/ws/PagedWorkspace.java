@@ -0,0 +1,147 @@
+package com.maze.ws;
+
+import java.util.Arrays;
+
+/**
+ * 分页的求解工作区类
+ * 供按需加载的迷宫使用：步数表与计数表按每页4096个下标分页，页在第一次被写入时才分配，
+ * 每次求解前丢弃所有页，队列是按需扩容的环形缓冲区；
+ * 堆内存只与本次BFS访问到的区域成正比，而与整个迷宫的大小无关
+ * 记录的值必须为正数（0表示未记录），求解器记录的步数总是从1开始
+ *
+ * @author Wshine
+ */
+final class PagedWorkspace extends SolverWorkspace {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private int[][] value = new int[0][];
+    private long[][] count;
+    private boolean counting;
+    private int[] queue = new int[64];
+    private int head;
+    private int size;
+    private int residentPages;
+
+    @Override
+    public void prepare(long cells) {
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("迷宫过大，无法在内存中求解");
+        }
+
+        int pages = (int) ((cells + PAGE_MASK) >>> PAGE_SHIFT);
+        if (value.length < pages) {
+            value = new int[pages][];
+            count = null;
+        } else {
+            Arrays.fill(value, null);
+            if (count != null) {
+                Arrays.fill(count, null);
+            }
+        }
+        counting = false;
+        residentPages = 0;
+        head = 0;
+        size = 0;
+    }
+
+    @Override
+    public int get(int index) {
+        int[] page = value[index >>> PAGE_SHIFT];
+        return page == null ? 0 : page[index & PAGE_MASK];
+    }
+
+    @Override
+    public boolean isSet(int index) {
+        return get(index) != 0;
+    }
+
+    @Override
+    public void set(int index, int v) {
+        int p = index >>> PAGE_SHIFT;
+        if (value[p] == null) {
+            value[p] = new int[PAGE_MASK + 1];
+            residentPages++;
+        }
+        value[p][index & PAGE_MASK] = v;
+        if (counting) {
+            if (count[p] == null) {
+                count[p] = new long[PAGE_MASK + 1];
+            }
+            count[p][index & PAGE_MASK] = 0;
+        }
+    }
+
+    @Override
+    public void enableCounting() {
+        if (count == null) {
+            count = new long[value.length][];
+        }
+        counting = true;
+    }
+
+    @Override
+    public long getCount(int index) {
+        if (!counting) {
+            return 0;
+        }
+        long[] page = count[index >>> PAGE_SHIFT];
+        return page == null ? 0 : page[index & PAGE_MASK];
+    }
+
+    @Override
+    public void addCount(int index, long c) {
+        long[] page = count[index >>> PAGE_SHIFT];
+        long sum = page[index & PAGE_MASK] + c;
+        page[index & PAGE_MASK] = sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    @Override
+    public void offer(int index) {
+        if (size == queue.length) {
+            //按顺序展开环形缓冲区后扩容
+            int[] grown = new int[size * 2];
+            int first = Math.min(size, queue.length - head);
+            System.arraycopy(queue, head, grown, 0, first);
+            System.arraycopy(queue, 0, grown, first, size - first);
+            queue = grown;
+            head = 0;
+        }
+        int tail = head + size;
+        if (tail >= queue.length) {
+            tail -= queue.length;
+        }
+        queue[tail] = index;
+        size++;
+    }
+
+    @Override
+    public int poll() {
+        int index = queue[head];
+        head++;
+        if (head == queue.length) {
+            head = 0;
+        }
+        size--;
+        return index;
+    }
+
+    @Override
+    public boolean isQueueEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int queueSize() {
+        return size;
+    }
+
+    /**
+     * 获取本次求解中已分配的页数
+     *
+     * @return 已分配的页数
+     */
+    int getResidentPages() {
+        return residentPages;
+    }
+}
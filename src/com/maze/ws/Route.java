@@ -1,5 +1,7 @@
 package com.maze.ws;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Stack;
 
 /**
@@ -120,26 +122,29 @@ public class Route {
     /**
      * 可视化路径
      * 根据绑定的迷宫生成一张更加可读的，标注了该路径的迷宫
+     * 只读取迷宫的位存储，不拷贝迷宫，也不创建路径点对象，因此也适用于按需加载的迷宫
      *
      * @return 可视化后的迷宫字符串
      */
     public String visualize() {
         String[] symbols = {".", "#"};
 
-        Maze copy = maze.getCopy();
-        StringBuilder s = new StringBuilder();
-        if (route.size() == 0) {
-            return copy.toString();
+        Set<Long> onRoute = new HashSet<>();
+        for (Maze.Point p : route) {
+            onRoute.add((long) p.row * maze.width + p.column);
+        }
+        if (onRoute.isEmpty()) {
+            return maze.toString();
         }
 
+        StringBuilder s = new StringBuilder();
         for (int i = 0; i < maze.height; i++) {
             for (int j = 0; j < maze.width; j++) {
                 String symbol;
-                Maze.Point p = maze.getUnit(i, j);
-                if (route.contains(p)) {
+                if (onRoute.contains((long) i * maze.width + j)) {
                     symbol = "|";
                 } else {
-                    symbol = symbols[p.getValue()];
+                    symbol = symbols[maze.isPassable(i, j) ? 0 : 1];
                 }
                 s.append(symbol).append(" ");
             }
@@ -148,6 +153,4 @@ public class Route {
 
         return s.toString();
     }
-
-
 }
@@ -0,0 +1,82 @@
+package com.maze.ws;
+
+/**
+ * 求解预算
+ * 由截止时间与取消标记组成，求解器在BFS的每一层之间与路径回溯过程中定期检查，
+ * 预算用完后停止求解并返回已经得到的部分结果；取消可以由其它线程发起
+ *
+ * @author Wshine
+ */
+public final class SolveBudget {
+    private final long deadline;
+    private final boolean timed;
+    private volatile boolean cancelled;
+
+    /**
+     * 构造方法
+     *
+     * @param deadline 截止时间（System.nanoTime()的值）
+     * @param timed    是否有截止时间
+     */
+    private SolveBudget(long deadline, boolean timed) {
+        this.deadline = deadline;
+        this.timed = timed;
+    }
+
+    /**
+     * 构造一个没有截止时间、只能被取消的预算
+     *
+     * @return 求解预算
+     */
+    public static SolveBudget unlimited() {
+        return new SolveBudget(0, false);
+    }
+
+    /**
+     * 构造一个从现在起指定毫秒数后用完的预算
+     *
+     * @param millis 可用的毫秒数
+     * @return 求解预算
+     * @throws IllegalArgumentException 毫秒数为负数时抛出
+     */
+    public static SolveBudget ofMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("预算时间不能为负数");
+        }
+        return new SolveBudget(System.nanoTime() + Math.min(millis, Long.MAX_VALUE / 4_000_000) * 1_000_000, true);
+    }
+
+    /**
+     * 取消求解，使用该预算的求解会在下一次检查时停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 判断是否已被取消
+     *
+     * @return 一个布尔值，代表是否已被取消
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 判断预算是否已经用完（被取消或超过截止时间）
+     *
+     * @return 一个布尔值，代表预算是否已经用完
+     */
+    public boolean isExhausted() {
+        return cancelled || timed && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * 获取剩余的时间
+     *
+     * @return 剩余的纳秒数（没有截止时间为Long.MAX_VALUE，已超时为0）
+     */
+    public long remainingNanos() {
+        return timed ? Math.max(0, deadline - System.nanoTime()) : Long.MAX_VALUE;
+    }
+}
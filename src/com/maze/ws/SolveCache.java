@@ -0,0 +1,161 @@
+package com.maze.ws;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 求解结果缓存类
+ * 以迷宫的冻结快照为键缓存求解结果，按最近最少使用的顺序淘汰，可在多线程下共享使用
+ * 查找时先比较内容哈希值，哈希值相同时再用Maze.equals()逐字比较迷宫内容，哈希值碰撞的不同迷宫不会得到彼此的结果
+ * 未命中时只求出最短路径长度与条数，并回溯至多keepPath条路径，不会枚举所有最短路径
+ *
+ * @author Wshine
+ */
+public class SolveCache {
+    public final int capacity;
+    public final int keepPath;
+    private final Map<Maze, SolveResult> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 构造方法，生成一个指定容量的求解结果缓存
+     *
+     * @param capacity 最多缓存的结果数量
+     * @param keepPath 每个结果最多保存的路径条数
+     */
+    public SolveCache(int capacity, int keepPath) {
+        if (capacity < 1 || keepPath < 0) {
+            throw new IllegalArgumentException("缓存容量必须为正整数，保存路径条数不能为负数");
+        }
+
+        this.capacity = capacity;
+        this.keepPath = keepPath;
+        this.results = new LinkedHashMap<Maze, SolveResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Maze, SolveResult> eldest) {
+                if (size() > SolveCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 求解指定的迷宫，若缓存中已有相同内容迷宫的结果则直接返回
+     * 求解过程在锁外对迷宫的冻结快照进行，同一迷宫被并发求解时可能会重复计算，但结果一致；
+     * 结果的pathCount为最短路径的总条数（超出int的范围时为Integer.MAX_VALUE）
+     *
+     * @param maze 需要求解的迷宫
+     * @return 该迷宫的求解结果
+     * @throws UnsupportedOperationException 迷宫为按需加载时抛出（无法冻结）
+     */
+    public SolveResult solve(Maze maze) {
+        SolveResult result;
+        synchronized (results) {
+            result = results.get(maze);
+        }
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+
+        misses.incrementAndGet();
+        Maze snapshot = maze.freeze();
+        MazeSolver solver = new MazeSolver(snapshot);
+        long paths = solver.countPaths();
+        if (keepPath > 0 && paths > 0) {
+            SolveResult routes = solver.solve(SolveBudget.unlimited(), null, keepPath);
+            result = new SolveResult(snapshot, routes.step, paths, routes.toRoutes(snapshot), keepPath, true);
+        } else {
+            result = new SolveResult(snapshot, solver.countStep(), paths, Collections.emptyList(), keepPath, true);
+        }
+        synchronized (results) {
+            results.put(snapshot, result);
+        }
+        return result;
+    }
+
+    /**
+     * 查询缓存中指定迷宫的结果，不进行求解
+     *
+     * @param maze 需要查询的迷宫
+     * @return 该迷宫的求解结果（未缓存则为null）
+     */
+    public SolveResult peek(Maze maze) {
+        synchronized (results) {
+            return results.get(maze);
+        }
+    }
+
+    /**
+     * 清空缓存（不清空统计数据）
+     */
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    /**
+     * 获取当前缓存的结果数量
+     *
+     * @return 当前缓存的结果数量
+     */
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    /**
+     * 获取缓存命中次数
+     *
+     * @return 缓存命中次数
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * 获取缓存未命中次数
+     *
+     * @return 缓存未命中次数
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 获取被淘汰的结果数量
+     *
+     * @return 被淘汰的结果数量
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * 获取缓存命中率
+     *
+     * @return 缓存命中率（0~1，尚未查询时为0）
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : hits.get() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + "/" + capacity
+                + " hits=" + getHitCount()
+                + " misses=" + getMissCount()
+                + " evictions=" + getEvictionCount()
+                + " hitRate=" + String.format("%.2f", getHitRate());
+    }
+}
@@ -0,0 +1,17 @@
+package com.maze.ws;
+
+/**
+ * 求解进度回调接口
+ * 带预算的求解在每次检查预算时调用，回调在求解线程中执行，应当尽快返回
+ *
+ * @author Wshine
+ */
+public interface SolveProgress {
+    /**
+     * 报告求解进度
+     *
+     * @param settled BFS中已被展开的路径点数量
+     * @param paths   已经得到的完整最短路径数量
+     */
+    void onProgress(long settled, long paths);
+}
@@ -0,0 +1,142 @@
+package com.maze.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 求解结果类
+ * 以紧凑的形式保存一次求解的结果：最短路径长度、最短路径数量以及其中的若干条路径，
+ * 路径以路径点下标（行 * 宽度 + 列）数组的形式保存，不引用具体的迷宫对象，
+ * 因此只能保存路径点总数不超过Integer.MAX_VALUE的迷宫的结果
+ *
+ * @author Wshine
+ */
+public class SolveResult {
+    public final int width;
+    public final int height;
+    public final int step;
+    public final int pathCount;
+    public final boolean complete;
+    private final int[][] paths;
+
+    /**
+     * 构造方法，根据求解器返回的路径列表生成求解结果
+     *
+     * @param maze     被求解的迷宫
+     * @param routes   求解器返回的所有最短路径
+     * @param keepPath 最多保存的路径条数
+     * @throws IllegalArgumentException 迷宫的路径点总数超出int下标的范围时抛出
+     */
+    public SolveResult(Maze maze, List<Route> routes, int keepPath) {
+        this(maze, routes.isEmpty() ? -1 : routes.get(0).getStep(), routes, keepPath, true);
+    }
+
+    /**
+     * 构造方法，可以表示预算用完时的部分结果
+     *
+     * @param maze     被求解的迷宫
+     * @param step     最短路径长度（-1则无解或尚未求出）
+     * @param routes   已经得到的最短路径
+     * @param keepPath 最多保存的路径条数
+     * @param complete 是否为完整的结果
+     * @throws IllegalArgumentException 迷宫的路径点总数超出int下标的范围时抛出
+     */
+    SolveResult(Maze maze, int step, List<Route> routes, int keepPath, boolean complete) {
+        this(maze, step, routes.size(), routes, keepPath, complete);
+    }
+
+    /**
+     * 构造方法，最短路径总条数单独给出（已经按层统计，不需要逐条记录）
+     *
+     * @param maze      被求解的迷宫
+     * @param step      最短路径长度（-1则无解）
+     * @param pathCount 最短路径的总条数（超出int的范围时记为Integer.MAX_VALUE）
+     * @param routes    需要保存的最短路径
+     * @param keepPath  最多保存的路径条数
+     * @param complete  是否为完整的结果
+     * @throws IllegalArgumentException 迷宫的路径点总数超出int下标的范围时抛出
+     */
+    SolveResult(Maze maze, int step, long pathCount, List<Route> routes, int keepPath, boolean complete) {
+        if ((long) maze.width * maze.height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("迷宫过大，无法以int下标保存求解结果");
+        }
+        this.width = maze.width;
+        this.height = maze.height;
+        this.step = step;
+        this.complete = complete;
+        this.pathCount = (int) Math.min(pathCount, Integer.MAX_VALUE);
+        this.paths = new int[Math.min(keepPath, routes.size())][];
+
+        for (int i = 0; i < paths.length; i++) {
+            Route route = routes.get(i);
+            int[] path = new int[route.getStep()];
+            for (int j = 0; j < path.length; j++) {
+                Maze.Point p = route.getPoint(j);
+                path[j] = p.row * width + p.column;
+            }
+            paths[i] = path;
+        }
+    }
+
+    /**
+     * 判断迷宫是否有解
+     *
+     * @return 一个布尔值，代表迷宫是否有解（部分结果中尚未得到路径时为false）
+     */
+    public boolean isSolvable() {
+        return pathCount > 0;
+    }
+
+    /**
+     * 判断是否为完整的结果
+     * 预算用完时step可能为-1（BFS尚未到达终点），pathCount只是已经得到的路径数量
+     *
+     * @return 一个布尔值，代表求解是否在预算内完成
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 获取保存下来的路径条数
+     *
+     * @return 保存下来的路径条数
+     */
+    public int getKeptPathCount() {
+        return paths.length;
+    }
+
+    /**
+     * 获取保存下来的指定路径（路径点下标数组，下标为行 * 宽度 + 列）
+     *
+     * @param index 路径序号
+     * @return 路径点下标数组的拷贝
+     */
+    public int[] getPath(int index) {
+        return paths[index].clone();
+    }
+
+    /**
+     * 将保存下来的路径还原为绑定到指定迷宫的路径对象
+     *
+     * @param maze 绑定的迷宫（宽高需与求解时一致）
+     * @return 一个路径列表
+     * @throws IllegalArgumentException 迷宫宽高与求解时不一致时抛出
+     */
+    public List<Route> toRoutes(Maze maze) {
+        if (maze.width != width || maze.height != height) {
+            throw new IllegalArgumentException("迷宫宽高与求解结果不一致");
+        }
+
+        List<Route> routes = new ArrayList<>();
+        for (int[] path : paths) {
+            Route route = new Route(maze);
+            for (int index : path) {
+                route.addPoint(maze.getUnit(index / width, index % width));
+            }
+            routes.add(route);
+        }
+
+        return routes;
+    }
+}
@@ -0,0 +1,164 @@
+package com.maze.ws;
+
+import java.util.Arrays;
+
+/**
+ * 求解工作区类
+ * 保存BFS使用的步数表与队列，可在多次求解之间复用；
+ * 步数表使用纪元标记，每次求解前的清空只需将纪元加一，时间复杂度为O(1)；
+ * 需要统计最短路径条数时可以启用与步数表并列的计数表
+ * 工作区不是线程安全的，每个线程应使用自己的工作区
+ *
+ * @author Wshine
+ */
+public class SolverWorkspace {
+    private int[] stamp = new int[0];
+    private int[] value = new int[0];
+    private int[] queue = new int[0];
+    private long[] count;
+    private int epoch = 0;
+    private int head;
+    private int size;
+
+    /**
+     * 为指定数量的路径点准备工作区：容量不足时扩容，然后清空步数表与队列
+     *
+     * @param cells 下标总数（迷宫布局实际用到的下标范围）
+     * @throws IllegalArgumentException 路径点数量超出数组能够表示的范围时抛出
+     */
+    public void prepare(long cells) {
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("迷宫过大，无法在内存中求解");
+        }
+
+        if (stamp.length < cells) {
+            stamp = new int[(int) cells];
+            value = new int[(int) cells];
+            queue = new int[(int) cells];
+            count = null;
+            epoch = 0;
+        }
+
+        epoch++;
+        if (epoch == 0) {
+            //纪元溢出时才需要真正清空一次
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * 获取指定路径点记录的值
+     *
+     * @param index 路径点在迷宫布局中的下标
+     * @return 记录的值（本次求解中未记录则为0）
+     */
+    public int get(int index) {
+        return stamp[index] == epoch ? value[index] : 0;
+    }
+
+    /**
+     * 判断本次求解中是否已经记录过指定路径点
+     *
+     * @param index 路径点在迷宫布局中的下标
+     * @return 一个布尔值，代表是否已经记录过
+     */
+    public boolean isSet(int index) {
+        return stamp[index] == epoch;
+    }
+
+    /**
+     * 记录指定路径点的值
+     *
+     * @param index 路径点在迷宫布局中的下标
+     * @param v     需要记录的值
+     */
+    public void set(int index, int v) {
+        stamp[index] = epoch;
+        value[index] = v;
+        if (count != null) {
+            count[index] = 0;
+        }
+    }
+
+    /**
+     * 启用路径计数，之后每次记录路径点的值时其计数都会被清零
+     * 需要在本次求解记录任何路径点之前调用
+     */
+    public void enableCounting() {
+        if (count == null) {
+            count = new long[stamp.length];
+        }
+    }
+
+    /**
+     * 获取指定路径点的计数
+     *
+     * @param index 路径点在迷宫布局中的下标
+     * @return 记录的计数（未启用计数或本次求解中未记录则为0）
+     */
+    public long getCount(int index) {
+        return count != null && stamp[index] == epoch ? count[index] : 0;
+    }
+
+    /**
+     * 给指定路径点的计数加上一个值，超出long的范围时保持为Long.MAX_VALUE
+     *
+     * @param index 路径点在迷宫布局中的下标
+     * @param c     需要加上的值（非负）
+     */
+    public void addCount(int index, long c) {
+        long sum = count[index] + c;
+        count[index] = sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * 将路径点加入队尾
+     * 队列为环形缓冲区，容量等于路径点数量，每个路径点在一次求解中至多入队一次时不会溢出
+     *
+     * @param index 路径点在迷宫布局中的下标
+     */
+    public void offer(int index) {
+        int tail = head + size;
+        if (tail >= queue.length) {
+            tail -= queue.length;
+        }
+        queue[tail] = index;
+        size++;
+    }
+
+    /**
+     * 取出队首的路径点
+     *
+     * @return 队首的路径点下标
+     */
+    public int poll() {
+        int index = queue[head];
+        head++;
+        if (head == queue.length) {
+            head = 0;
+        }
+        size--;
+        return index;
+    }
+
+    /**
+     * 判断队列是否为空
+     *
+     * @return 一个布尔值，代表队列是否为空
+     */
+    public boolean isQueueEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获取队列当前的长度
+     *
+     * @return 队列当前的长度
+     */
+    public int queueSize() {
+        return size;
+    }
+}
@@ -0,0 +1,32 @@
+package com.maze.ws;
+
+import java.io.IOException;
+
+/**
+ * 迷宫分块存储的接口
+ * 按需加载的迷宫以块为单位从这里读取路径点，修改过的块在被换出或刷新时写回；
+ * 每块为1024个long（65536个路径点），使用Z序布局时一块恰好是一个256*256的正方形区域
+ *
+ * @author Wshine
+ */
+public interface TileStore {
+
+    /**
+     * 读取一块
+     *
+     * @param chunk 块下标
+     * @param words 该块的字数（最后一块可能不满1024）
+     * @return 该块的内容（1为障碍物），全为0时可以返回null
+     * @throws IOException IO错误
+     */
+    long[] read(int chunk, int words) throws IOException;
+
+    /**
+     * 写入一块
+     *
+     * @param chunk 块下标
+     * @param data  该块的内容
+     * @throws IOException IO错误
+     */
+    void write(int chunk, long[] data) throws IOException;
+}
@@ -0,0 +1,458 @@
+package com.maze.ws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 分块并行的大迷宫生成类
+ * 迷宫被均匀地划分为边长约为指定大小的区块，每个区块用各自的种子在ForkJoinPool中独立地用MazeGenerator生成，
+ * 并填充区块内与区块起点不连通的孤立区域，使每个区块内部连通；
+ * 之后把区块看作并查集中的元素，先合并边界上已经相通的相邻区块，再按随机顺序在剩余的边界上开门，直到所有区块连通；
+ * 最后打通整个迷宫的起点与终点，并在不破坏连通性的前提下增删障碍物，使障碍物个数与指定的密度一致
+ * 相同的参数与种子总是生成相同的迷宫，与并行度无关
+ *
+ * @author Wshine
+ */
+public class TiledMazeGenerator {
+    private static final int MIN_TILE = 8;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    public final int width;
+    public final int height;
+    public final int alpha;
+    private final int startRow;
+    private final int startCol;
+    private final int destRow;
+    private final int destCol;
+    private final int[] rowBounds;
+    private final int[] colBounds;
+    private final ForkJoinPool pool;
+    private final Random rand;
+    private final long seed;
+
+    private Maze maze;
+    private int[] parent;
+
+    /**
+     * 构造方法，区块边长为64，使用公共的ForkJoinPool
+     *
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param alpha    障碍密度（百分比）
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @param seed     随机种子
+     * @throws IllegalArgumentException 参数不合法时抛出
+     */
+    public TiledMazeGenerator(int width, int height, int alpha, int startRow, int startCol, int destRow, int destCol,
+                              long seed) {
+        this(width, height, alpha, startRow, startCol, destRow, destCol, seed, 64, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param width    迷宫的宽度
+     * @param height   迷宫的高度
+     * @param alpha    障碍密度（百分比）
+     * @param startRow 起点所在行
+     * @param startCol 起点所在列
+     * @param destRow  终点所在行
+     * @param destCol  终点所在列
+     * @param seed     随机种子
+     * @param tileSize 区块的大致边长（至少为8，实际边长在均分后可能略有不同）
+     * @param pool     生成区块使用的线程池
+     * @throws IllegalArgumentException 参数不合法，或障碍物密度过高导致区块无法生成时抛出
+     */
+    public TiledMazeGenerator(int width, int height, int alpha, int startRow, int startCol, int destRow, int destCol,
+                              long seed, int tileSize, ForkJoinPool pool) {
+        if (tileSize < MIN_TILE) {
+            throw new IllegalArgumentException("区块边长不能小于" + MIN_TILE);
+        }
+        if (width < MIN_TILE || height < MIN_TILE) {
+            throw new IllegalArgumentException("迷宫宽高不能小于" + MIN_TILE);
+        }
+        //构造一次迷宫以检查宽高、起点与终点是否合法
+        new Maze(width, height, startRow, startCol, destRow, destCol);
+
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+        this.startRow = startRow;
+        this.startCol = startCol;
+        this.destRow = destRow;
+        this.destCol = destCol;
+        this.rowBounds = bounds(height, tileSize);
+        this.colBounds = bounds(width, tileSize);
+        this.pool = pool;
+        this.rand = new Random(seed);
+        this.seed = seed;
+
+        //区块越大越难满足密度要求，用最大的区块检查一次
+        int maxRows = (height + rowBounds.length - 2) / (rowBounds.length - 1);
+        int maxCols = (width + colBounds.length - 2) / (colBounds.length - 1);
+        new MazeGenerator(maxCols, maxRows, alpha, 0, 0, maxRows - 1, maxCols - 1, seed);
+    }
+
+    /**
+     * 把一条边均分为若干区块
+     *
+     * @param length   边长
+     * @param tileSize 区块的大致边长
+     * @return 每个区块的起始位置，最后一个元素为边长
+     */
+    private static int[] bounds(int length, int tileSize) {
+        int count = Math.max(1, (length + tileSize / 2) / tileSize);
+        int[] result = new int[count + 1];
+        for (int i = 0; i <= count; i++) {
+            result[i] = (int) ((long) length * i / count);
+        }
+        return result;
+    }
+
+    /**
+     * 生成迷宫的主方法
+     * 每次调用都从构造时的种子重新开始，因此结果相同
+     *
+     * @return 生成的迷宫
+     */
+    public Maze generate() {
+        rand.setSeed(seed);
+        int tilesX = colBounds.length - 1;
+        int tilesY = rowBounds.length - 1;
+        long[][] tiles = new long[tilesX * tilesY][];
+
+        //第一部分：并行生成每个区块，结果按行优先压缩为位数组
+        pool.submit(() -> IntStream.range(0, tiles.length).parallel()
+                .forEach(i -> tiles[i] = generateTile(i % tilesX, i / tilesX))).join();
+
+        maze = new Maze(width, height, startRow, startCol, destRow, destCol);
+        for (int i = 0; i < tiles.length; i++) {
+            int top = rowBounds[i / tilesX];
+            int left = colBounds[i % tilesX];
+            int cols = colBounds[i % tilesX + 1] - left;
+            int rows = rowBounds[i / tilesX + 1] - top;
+            for (int k = 0; k < rows * cols; k++) {
+                if ((tiles[i][k >>> 6] & 1L << k) != 0) {
+                    maze.setWall(top + k / cols, left + k % cols, true);
+                }
+            }
+            tiles[i] = null;
+        }
+
+        //第二部分：用并查集把所有区块连通
+        stitch(tilesX, tilesY);
+
+        //第三部分：打通起点与终点，并调整障碍物个数
+        connect(startRow, startCol);
+        connect(destRow, destCol);
+        adjustDensity();
+
+        Maze result = maze;
+        maze = null;
+        parent = null;
+        return result;
+    }
+
+    /**
+     * 生成一个区块，并填充区块内与区块起点不连通的孤立区域
+     *
+     * @param tx 区块所在列
+     * @param ty 区块所在行
+     * @return 区块内每个路径点是否为障碍物（按行优先压缩的位数组）
+     */
+    private long[] generateTile(int tx, int ty) {
+        int rows = rowBounds[ty + 1] - rowBounds[ty];
+        int cols = colBounds[tx + 1] - colBounds[tx];
+        long tileSeed = (seed + (long) (ty * (colBounds.length - 1) + tx + 1) * GOLDEN) * GOLDEN;
+        Maze tile = new MazeGenerator(cols, rows, alpha, 0, 0, rows - 1, cols - 1, tileSeed).generate();
+
+        MazeComponents components = new MazeComponents(tile);
+        long[] bits = new long[(rows * cols + 63) >>> 6];
+        for (int k = 0; k < rows * cols; k++) {
+            int r = k / cols;
+            int c = k % cols;
+            if (!components.connected(0, 0, r, c)) {
+                bits[k >>> 6] |= 1L << k;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 用并查集连通所有区块
+     * 先合并边界上已有相邻可通行路径点的区块，再按随机顺序处理剩余的相邻区块对，
+     * 两者尚未连通时在边界上开门
+     *
+     * @param tilesX 每行的区块数
+     * @param tilesY 每列的区块数
+     */
+    private void stitch(int tilesX, int tilesY) {
+        parent = new int[tilesX * tilesY];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        List<int[]> pending = new ArrayList<>();
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int id = ty * tilesX + tx;
+                if (tx + 1 < tilesX && !openBorder(tx, ty, true)) {
+                    pending.add(new int[]{id, id + 1, 1});
+                } else if (tx + 1 < tilesX) {
+                    union(id, id + 1);
+                }
+                if (ty + 1 < tilesY && !openBorder(tx, ty, false)) {
+                    pending.add(new int[]{id, id + tilesX, 0});
+                } else if (ty + 1 < tilesY) {
+                    union(id, id + tilesX);
+                }
+            }
+        }
+
+        Collections.shuffle(pending, rand);
+        for (int[] edge : pending) {
+            if (find(edge[0]) != find(edge[1])) {
+                makeDoor(edge[0] % tilesX, edge[0] / tilesX, edge[2] == 1);
+                union(edge[0], edge[1]);
+            }
+        }
+    }
+
+    /**
+     * 判断区块与其东侧（或南侧）相邻区块之间的边界上是否已经有相邻的可通行路径点
+     *
+     * @param tx   区块所在列
+     * @param ty   区块所在行
+     * @param east 是否为东侧边界（否则为南侧边界）
+     * @return 一个布尔值，代表边界是否已经相通
+     */
+    private boolean openBorder(int tx, int ty, boolean east) {
+        int length = east ? rowBounds[ty + 1] - rowBounds[ty] : colBounds[tx + 1] - colBounds[tx];
+        for (int k = 0; k < length; k++) {
+            int[] a = borderCell(tx, ty, east, k);
+            if (maze.isPassable(a[0], a[1]) && maze.isPassable(a[2], a[3])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在区块与其东侧（或南侧）相邻区块之间的边界上开门
+     * 优先随机选择只需移除一个障碍物、且该障碍物两侧都可通行的位置（区块边长至少为5，内侧的路径点仍在同一区块内）；
+     * 没有这样的位置时，沿两侧区块紧贴边界的一行（列）打通到区块的起点（或终点）所在的角，使开门的障碍物最少
+     *
+     * @param tx   区块所在列
+     * @param ty   区块所在行
+     * @param east 是否为东侧边界（否则为南侧边界）
+     */
+    private void makeDoor(int tx, int ty, boolean east) {
+        int length = east ? rowBounds[ty + 1] - rowBounds[ty] : colBounds[tx + 1] - colBounds[tx];
+        List<int[]> doors = new ArrayList<>();
+        for (int k = 0; k < length; k++) {
+            int[] a = borderCell(tx, ty, east, k);
+            boolean openA = maze.isPassable(a[0], a[1]);
+            boolean openB = maze.isPassable(a[2], a[3]);
+            //一侧可通行，另一侧的障碍物向自己区块内侧的相邻路径点可通行
+            int dr = a[2] - a[0];
+            int dc = a[3] - a[1];
+            if (openA && !openB && maze.isPassable(a[2] + dr, a[3] + dc)) {
+                doors.add(new int[]{a[2], a[3]});
+            } else if (!openA && openB && maze.isPassable(a[0] - dr, a[1] - dc)) {
+                doors.add(new int[]{a[0], a[1]});
+            }
+        }
+        if (!doors.isEmpty()) {
+            int[] door = doors.get(rand.nextInt(doors.size()));
+            maze.setWall(door[0], door[1], false);
+            return;
+        }
+
+        //区块自身的(0,0)与(行数-1,列数-1)是可通行且与整个区块连通的，两者分别在边界两侧紧贴边界的一行（列）上
+        int best = 0;
+        int bestCost = Integer.MAX_VALUE;
+        for (int k = 0; k < length; k++) {
+            int cost = 0;
+            for (int j = k; j < length; j++) {
+                int[] a = borderCell(tx, ty, east, j);
+                cost += maze.isPassable(a[0], a[1]) ? 0 : 1;
+            }
+            for (int j = 0; j <= k; j++) {
+                int[] a = borderCell(tx, ty, east, j);
+                cost += maze.isPassable(a[2], a[3]) ? 0 : 1;
+            }
+            if (cost < bestCost) {
+                best = k;
+                bestCost = cost;
+            }
+        }
+        for (int j = best; j < length; j++) {
+            int[] a = borderCell(tx, ty, east, j);
+            maze.setWall(a[0], a[1], false);
+        }
+        for (int j = 0; j <= best; j++) {
+            int[] a = borderCell(tx, ty, east, j);
+            maze.setWall(a[2], a[3], false);
+        }
+    }
+
+    /**
+     * 求边界上第k对相邻的路径点
+     *
+     * @param tx   区块所在列
+     * @param ty   区块所在行
+     * @param east 是否为东侧边界（否则为南侧边界）
+     * @param k    沿边界的偏移
+     * @return 数组{本区块一侧的行, 列, 相邻区块一侧的行, 列}
+     */
+    private int[] borderCell(int tx, int ty, boolean east, int k) {
+        if (east) {
+            int col = colBounds[tx + 1] - 1;
+            int row = rowBounds[ty] + k;
+            return new int[]{row, col, row, col + 1};
+        }
+        int row = rowBounds[ty + 1] - 1;
+        int col = colBounds[tx] + k;
+        return new int[]{row, col, row + 1, col};
+    }
+
+    /**
+     * 判断路径点是否有可通行的相邻路径点
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表是否有可通行的相邻路径点
+     */
+    private boolean hasPass(int row, int col) {
+        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        for (int[] direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            if (r >= 0 && r < height && c >= 0 && c < width && maze.isPassable(r, c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 打通指定的路径点，若它没有可通行的相邻路径点，则沿最短的路线挖掘到最近的可通行路径点
+     * 除孤立的路径点外整个迷宫已经连通，因此挖通后该路径点与其它所有路径点连通
+     *
+     * @param row 指定行
+     * @param col 指定列
+     */
+    private void connect(int row, int col) {
+        maze.setWall(row, col, false);
+        if (hasPass(row, col)) {
+            return;
+        }
+
+        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        Map<Long, Long> from = new HashMap<>();
+        Queue<Long> queue = new LinkedList<>();
+        long origin = (long) row * width + col;
+        from.put(origin, -1L);
+        queue.add(origin);
+        while (!queue.isEmpty()) {
+            long cell = queue.poll();
+            int r = (int) (cell / width);
+            int c = (int) (cell % width);
+            if (cell != origin && maze.isPassable(r, c)) {
+                //找到最近的可通行路径点，沿来路挖掘
+                for (long p = from.get(cell); p != origin; p = from.get(p)) {
+                    maze.setWall((int) (p / width), (int) (p % width), false);
+                }
+                return;
+            }
+            for (int[] direction : directions) {
+                int nr = r + direction[0];
+                int nc = c + direction[1];
+                long next = (long) nr * width + nc;
+                if (nr >= 0 && nr < height && nc >= 0 && nc < width && !from.containsKey(next)) {
+                    from.put(next, cell);
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在不破坏连通性的前提下增删障碍物，使障碍物个数与指定的密度一致
+     * 需要调整的个数只与区块数同一数量级，因此随机抽取路径点：障碍物过少时填充死路的末端（不会切断其它路径点），
+     * 过多时移除与路径相邻的障碍物；抽取次数过多仍无法满足时放弃
+     */
+    private void adjustDensity() {
+        long target = (long) ((long) width * height * alpha / 100.0 + 0.5);
+        long attempts = 16L * width * height;
+        while (maze.wallCount() != target && attempts-- > 0) {
+            int row = rand.nextInt(height);
+            int col = rand.nextInt(width);
+            if (maze.wallCount() < target) {
+                if (isLeaf(row, col)) {
+                    maze.setWall(row, col, true);
+                }
+            } else if (!maze.isPassable(row, col) && hasPass(row, col)) {
+                maze.setWall(row, col, false);
+            }
+        }
+    }
+
+    /**
+     * 判断路径点是否为死路的末端（可通行、不是起点或终点，且只有一个可通行的相邻路径点）
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个布尔值，代表是否为死路的末端
+     */
+    private boolean isLeaf(int row, int col) {
+        if (!maze.isPassable(row, col) || row == startRow && col == startCol || row == destRow && col == destCol) {
+            return false;
+        }
+        int passes = 0;
+        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        for (int[] direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            if (r >= 0 && r < height && c >= 0 && c < width && maze.isPassable(r, c)) {
+                passes++;
+            }
+        }
+        return passes == 1;
+    }
+
+    /**
+     * 查找区块所在集合的根，同时进行路径减半
+     *
+     * @param i 区块下标
+     * @return 根的下标
+     */
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * 合并两个区块所在的集合
+     *
+     * @param a 区块下标
+     * @param b 区块下标
+     */
+    private void union(int a, int b) {
+        parent[find(a)] = find(b);
+    }
+}
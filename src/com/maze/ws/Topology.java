@@ -0,0 +1,183 @@
+package com.maze.ws;
+
+/**
+ * 迷宫拓扑类
+ * 决定每个路径点有哪些相邻的路径点；相邻方向的行列偏移、按行存储时的下标偏移以及边界上可用方向的掩码都在构造时预先算好，
+ * 求解时只需查表，不需要逐次判断越界
+ * 边界掩码按路径点所处的边界类别（是否在首行、末行、首列、末列以及行的奇偶）存放，与迷宫大小无关，只有32项
+ *
+ * @author Wshine
+ */
+public final class Topology {
+    public final Type type;
+    public final int width;
+    public final int height;
+    private final int degree;
+    private final int[][] rowOffset;
+    private final int[][] colOffset;
+    private final int[][] indexOffset;
+    private final int[] masks = new int[32];
+
+    /**
+     * 拓扑类型
+     */
+    public enum Type {
+        /**
+         * 四连通：上下左右，方向依次为下、右、上、左
+         */
+        FOUR(new int[][][]{{{1, 0}, {0, 1}, {-1, 0}, {0, -1}}}),
+        /**
+         * 八连通：在四连通的基础上加上四个斜向
+         */
+        EIGHT(new int[][][]{{{1, 0}, {0, 1}, {-1, 0}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}}}),
+        /**
+         * 六边形网格，奇数行整体向右错开半格（odd-r偏移坐标），偶数行与奇数行的斜向邻居不同
+         */
+        HEX(new int[][][]{
+                {{1, -1}, {1, 0}, {0, 1}, {-1, 0}, {-1, -1}, {0, -1}},
+                {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {0, -1}}});
+
+        private final int[][][] directions;
+
+        /**
+         * 构造方法
+         *
+         * @param directions 按行的奇偶给出的方向表（只有一张表时奇偶行相同）
+         */
+        Type(int[][][] directions) {
+            this.directions = directions;
+        }
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param type   拓扑类型
+     * @param width  迷宫宽度
+     * @param height 迷宫高度
+     */
+    private Topology(Type type, int width, int height) {
+        this.type = type;
+        this.width = width;
+        this.height = height;
+        this.degree = type.directions[0].length;
+        this.rowOffset = new int[2][degree];
+        this.colOffset = new int[2][degree];
+        this.indexOffset = new int[2][degree];
+        for (int parity = 0; parity < 2; parity++) {
+            int[][] directions = type.directions[parity % type.directions.length];
+            for (int k = 0; k < degree; k++) {
+                rowOffset[parity][k] = directions[k][0];
+                colOffset[parity][k] = directions[k][1];
+                indexOffset[parity][k] = directions[k][0] * width + directions[k][1];
+            }
+        }
+
+        for (int c = 0; c < masks.length; c++) {
+            int parity = c >>> 4;
+            for (int k = 0; k < degree; k++) {
+                int dr = rowOffset[parity][k];
+                int dc = colOffset[parity][k];
+                boolean valid = !(dr < 0 && (c & 1) != 0) && !(dr > 0 && (c & 2) != 0)
+                        && !(dc < 0 && (c & 4) != 0) && !(dc > 0 && (c & 8) != 0);
+                if (valid) {
+                    masks[c] |= 1 << k;
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据拓扑类型与迷宫宽高生成拓扑
+     *
+     * @param type   拓扑类型
+     * @param width  迷宫宽度
+     * @param height 迷宫高度
+     * @return 生成的拓扑
+     */
+    public static Topology of(Type type, int width, int height) {
+        return new Topology(type, width, height);
+    }
+
+    /**
+     * 获取每个路径点最多的相邻方向数
+     *
+     * @return 方向数
+     */
+    public int degree() {
+        return degree;
+    }
+
+    /**
+     * 求指定路径点在迷宫内的相邻方向
+     *
+     * @param row 指定行
+     * @param col 指定列
+     * @return 一个掩码，第k位代表第k个方向的相邻路径点在迷宫内
+     */
+    public int mask(int row, int col) {
+        int c = (row == 0 ? 1 : 0) | (row == height - 1 ? 2 : 0) | (col == 0 ? 4 : 0) | (col == width - 1 ? 8 : 0)
+                | (row & 1) << 4;
+        return masks[c];
+    }
+
+    /**
+     * 求指定行的第k个方向的行偏移
+     *
+     * @param row 所在行
+     * @param k   方向
+     * @return 行偏移
+     */
+    public int rowOffset(int row, int k) {
+        return rowOffset[row & 1][k];
+    }
+
+    /**
+     * 求指定行的第k个方向的列偏移
+     *
+     * @param row 所在行
+     * @param k   方向
+     * @return 列偏移
+     */
+    public int colOffset(int row, int k) {
+        return colOffset[row & 1][k];
+    }
+
+    /**
+     * 求指定行的第k个方向在按行存储时（下标为行 * 宽度 + 列）的下标偏移
+     *
+     * @param row 所在行
+     * @param k   方向
+     * @return 下标偏移
+     */
+    public int offset(int row, int k) {
+        return indexOffset[row & 1][k];
+    }
+
+    /**
+     * 求两点之间不考虑障碍物时的最少移动次数，可作为该拓扑下A*搜索的可采纳启发函数
+     *
+     * @param row1 第一个点所在行
+     * @param col1 第一个点所在列
+     * @param row2 第二个点所在行
+     * @param col2 第二个点所在列
+     * @return 最少移动次数
+     */
+    public int distance(int row1, int col1, int row2, int col2) {
+        int dr = Math.abs(row1 - row2);
+        int dc = Math.abs(col1 - col2);
+        switch (type) {
+            case EIGHT:
+                return Math.max(dr, dc);
+            case HEX:
+                //换算成立方坐标，距离为三个坐标差的最大值
+                int x1 = col1 - (row1 - (row1 & 1)) / 2;
+                int x2 = col2 - (row2 - (row2 & 1)) / 2;
+                int dx = x1 - x2;
+                int dz = row1 - row2;
+                return Math.max(Math.abs(dx), Math.max(Math.abs(dz), Math.abs(dx + dz)));
+            default:
+                return dr + dc;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.maze.ws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 带通行代价的迷宫求解类
+ * 路径的代价为路径上所有路径点（包括起点与终点）的通行代价之和，代价都为1时就是最短路径长度；
+ * 相邻关系由迷宫的拓扑决定；代价是1~MAX_COST的小整数，因此用Dial算法：
+ * 按距离取模放入MAX_COST + 1个循环桶，依次取出，时间复杂度为O(V + C)；
+ * 求得的路径条数与枚举出的路径都只包含代价最小的路径
+ * 迷宫没有设置过代价时直接使用MazeSolver的BFS
+ * 求解器对象本身不是线程安全的
+ *
+ * @author Wshine
+ */
+public class WeightedSolver {
+    private static final int BUCKETS = Maze.MAX_COST + 1;
+    private static final long UNSET = Long.MAX_VALUE;
+
+    private Maze maze;
+    private final MazeSolver unit;
+    private long[] dist = new long[0];
+    private long[] ways = new long[0];
+    private final int[][] buckets = new int[BUCKETS][];
+    private final int[] bucketSize = new int[BUCKETS];
+
+    public WeightedSolver(Maze maze) {
+        this.maze = maze;
+        this.unit = new MazeSolver(maze);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new int[16];
+        }
+    }
+
+    /**
+     * 切换待解决的迷宫
+     *
+     * @param maze 切换的迷宫
+     */
+    public void changeMaze(Maze maze) {
+        this.maze = maze;
+        this.unit.changeMaze(maze);
+    }
+
+    /**
+     * 求起点到终点的最小代价
+     *
+     * @return 最小代价（-1则迷宫无解）
+     */
+    public long countCost() {
+        if (!maze.hasCosts()) {
+            return unit.countStep();
+        }
+        long cost = search();
+        return cost == UNSET ? -1 : cost;
+    }
+
+    /**
+     * 求代价最小的路径条数，超过long的范围时返回Long.MAX_VALUE
+     *
+     * @return 路径条数（迷宫无解时为0）
+     */
+    public long countPaths() {
+        if (!maze.hasCosts()) {
+            return unit.countPaths();
+        }
+        return search() == UNSET ? 0 : ways[index(maze.getDestPoint())];
+    }
+
+    /**
+     * 求出所有代价最小的路径
+     * 路径可能多到无法枚举完，需要限制数量的调用者应使用solve(int)
+     *
+     * @return 所有代价最小的路径（迷宫无解时为空列表）
+     */
+    public List<Route> solve() {
+        return solve(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 求出最多指定条数的代价最小的路径
+     *
+     * @param maxPaths 最多求出的路径条数
+     * @return 代价最小的路径（迷宫无解时为空列表）
+     * @throws IllegalArgumentException 条数不是正整数时抛出
+     */
+    public List<Route> solve(int maxPaths) {
+        if (maxPaths < 1) {
+            throw new IllegalArgumentException("路径条数必须为正整数");
+        }
+        if (!maze.hasCosts()) {
+            return maxPaths == Integer.MAX_VALUE ? unit.solve()
+                    : unit.solve(SolveBudget.unlimited(), null, maxPaths).toRoutes(maze);
+        }
+
+        List<Route> routes = new ArrayList<>();
+        if (search() == UNSET) {
+            return routes;
+        }
+
+        //从终点沿代价递减的前驱深度优先回溯，每个已确定距离的路径点都能回到起点，因此不会走进死路
+        int width = maze.width;
+        Topology topology = maze.getTopology();
+        int start = index(maze.getStartPoint());
+        int[] path = new int[16];
+        int[] next = new int[16];
+        int depth = 0;
+        path[0] = index(maze.getDestPoint());
+        next[0] = 0;
+        while (depth >= 0 && routes.size() < maxPaths) {
+            int v = path[depth];
+            if (v == start) {
+                Route route = new Route(maze);
+                for (int i = depth; i >= 0; i--) {
+                    route.addPoint(maze.getUnit(path[i] / width, path[i] % width));
+                }
+                routes.add(route);
+                depth--;
+                continue;
+            }
+
+            int u = -1;
+            int row = v / width;
+            int mask = topology.mask(row, v % width);
+            while (u < 0 && next[depth] < topology.degree()) {
+                int k = next[depth]++;
+                if ((mask & 1 << k) != 0) {
+                    u = v + topology.offset(row, k);
+                    if (dist[u] == UNSET || dist[u] + cost(v) != dist[v]) {
+                        u = -1;
+                    }
+                }
+            }
+            if (u < 0) {
+                depth--;
+                continue;
+            }
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                next = Arrays.copyOf(next, depth * 2);
+            }
+            path[depth] = u;
+            next[depth] = 0;
+        }
+        return routes;
+    }
+
+    /**
+     * 用Dial算法从起点出发求每个路径点的最小代价与代价最小的路径条数，终点的距离确定后即停止
+     * 每个路径点出桶时距离已经确定；代价至少为1，所以前驱总是先于后继出桶，出桶时的路径条数也已经确定
+     *
+     * @return 终点的最小代价（无法到达时为UNSET）
+     */
+    private long search() {
+        int width = maze.width;
+        int cells = width * maze.height;
+        Topology topology = maze.getTopology();
+        if (dist.length < cells) {
+            dist = new long[cells];
+            ways = new long[cells];
+        }
+        Arrays.fill(dist, 0, cells, UNSET);
+        Arrays.fill(ways, 0, cells, 0);
+        Arrays.fill(bucketSize, 0);
+
+        Maze.Point s = maze.getStartPoint();
+        int dest = index(maze.getDestPoint());
+        if (!maze.isPassable(s.row, s.column)) {
+            return UNSET;
+        }
+        int start = index(s);
+        dist[start] = cost(start);
+        ways[start] = 1;
+        push(start, dist[start]);
+        long pending = 1;
+
+        for (long d = dist[start]; pending > 0; d++) {
+            int b = (int) (d % BUCKETS);
+            while (bucketSize[b] > 0) {
+                int v = buckets[b][--bucketSize[b]];
+                pending--;
+                if (dist[v] != d) {
+                    //过期的桶项，该路径点之后被更新为更小的距离
+                    continue;
+                }
+                if (v == dest) {
+                    return d;
+                }
+                int row = v / width;
+                int mask = topology.mask(row, v % width);
+                for (int k = 0; k < topology.degree(); k++) {
+                    if ((mask & 1 << k) == 0) {
+                        continue;
+                    }
+                    int u = v + topology.offset(row, k);
+                    if (!maze.isPassable(u / width, u % width)) {
+                        continue;
+                    }
+                    long nd = d + cost(u);
+                    if (nd < dist[u]) {
+                        dist[u] = nd;
+                        ways[u] = ways[v];
+                        push(u, nd);
+                        pending++;
+                    } else if (nd == dist[u]) {
+                        long sum = ways[u] + ways[v];
+                        ways[u] = sum < 0 ? Long.MAX_VALUE : sum;
+                    }
+                }
+            }
+        }
+        return UNSET;
+    }
+
+    /**
+     * 把路径点放入距离对应的桶
+     *
+     * @param v 路径点下标
+     * @param d 距离
+     */
+    private void push(int v, long d) {
+        int b = (int) (d % BUCKETS);
+        if (bucketSize[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], bucketSize[b] * 2);
+        }
+        buckets[b][bucketSize[b]++] = v;
+    }
+
+    /**
+     * 获取路径点的通行代价
+     *
+     * @param v 路径点下标
+     * @return 通行代价
+     */
+    private int cost(int v) {
+        return (maze.costPlane()[v] & 0xff) + 1;
+    }
+
+    /**
+     * 获取路径点在本求解器中的下标
+     *
+     * @param p 路径点
+     * @return 下标（行 * 宽度 + 列）
+     */
+    private int index(Maze.Point p) {
+        return p.row * maze.width + p.column;
+    }
+}